@@ -0,0 +1,31 @@
+plugins {
+    `java-library`
+}
+
+version = "0.1"
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_21
+    targetCompatibility = JavaVersion.VERSION_21
+
+    withJavadocJar()
+    withSourcesJar()
+}
+
+repositories {
+    mavenCentral()
+}
+
+dependencies {
+    api(project(":blake3"))
+
+    testImplementation("org.junit.jupiter:junit-jupiter:5.10.1")
+}
+
+tasks.compileJava {
+    options.javaModuleVersion.set(provider { version as String })
+}
+
+tasks.named<Test>("test") {
+    useJUnitPlatform()
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cz.aprar.oss.blake3.dedup;
+
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * Content-defined chunk of the input. Chunks are equal when their offsets, lengths and
+ * hash contents are equal.
+ * @param offset Offset of the chunk in the input
+ * @param length Chunk length
+ * @param hash 32 bytes Blake3 hash of the chunk, its address in a content-addressed store
+ */
+public record Chunk(long offset, int length, byte[] hash) {
+    public Chunk {
+        hash = hash.clone();
+    }
+
+    /**
+     * Hash of the chunk.
+     * @return Copy of the 32 bytes hash
+     */
+    @Override
+    public byte[] hash() {
+        return hash.clone();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        return o instanceof Chunk other
+                && offset == other.offset
+                && length == other.length
+                && Arrays.equals(hash, other.hash);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * Long.hashCode(offset) + length) + Arrays.hashCode(hash);
+    }
+
+    @Override
+    public String toString() {
+        return "Chunk[offset=" + offset + ", length=" + length + ", hash=" + HexFormat.of().formatHex(hash) + "]";
+    }
+}
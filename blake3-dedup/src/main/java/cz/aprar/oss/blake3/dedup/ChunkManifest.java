@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cz.aprar.oss.blake3.dedup;
+
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Chunks of the whole input in order, with the hash of the whole input. Manifests are equal
+ * when their chunks, lengths and root hash contents are equal.
+ * @param chunks Chunks in input order
+ * @param length Input length
+ * @param rootHash 32 bytes Blake3 hash of the whole input
+ */
+public record ChunkManifest(List<Chunk> chunks, long length, byte[] rootHash) {
+    public ChunkManifest {
+        chunks = List.copyOf(chunks);
+        rootHash = rootHash.clone();
+    }
+
+    /**
+     * Hash of the whole input.
+     * @return Copy of the 32 bytes hash
+     */
+    @Override
+    public byte[] rootHash() {
+        return rootHash.clone();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        return o instanceof ChunkManifest other
+                && chunks.equals(other.chunks)
+                && length == other.length
+                && Arrays.equals(rootHash, other.rootHash);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * chunks.hashCode() + Long.hashCode(length)) + Arrays.hashCode(rootHash);
+    }
+
+    @Override
+    public String toString() {
+        return "ChunkManifest[chunks=" + chunks.size() + ", length=" + length
+                + ", rootHash=" + HexFormat.of().formatHex(rootHash) + "]";
+    }
+}
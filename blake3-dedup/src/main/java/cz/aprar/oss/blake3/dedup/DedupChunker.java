@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cz.aprar.oss.blake3.dedup;
+
+import cz.aprar.oss.blake3.Hasher;
+import cz.aprar.oss.blake3.PipelinedHasher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+
+/**
+ * Splits input into content-defined chunks and hashes them for deduplication in a single pass.
+ * The producer thread finds chunk boundaries, the executor hashes the chunks in parallel and
+ * the whole input hash is computed by a {@link PipelinedHasher} on the same executor.
+ * At most a few windows of input are held in memory at once.
+ */
+public class DedupChunker {
+    private static final int STREAM_WINDOW_LEN = 8 * 1024 * 1024;
+    private static final long MAP_WINDOW_LEN = 256L * 1024 * 1024;
+    private static final int MAX_WINDOWS_IN_FLIGHT = 4;
+
+    private final FastCdc cdc;
+    private final Executor executor;
+    private final BiConsumer<Chunk, ByteBuffer> sink;
+
+    /**
+     * Construct a chunker producing only the manifest.
+     * @param cdc Chunk boundary detection
+     * @param executor Executor hashing the chunks
+     */
+    public DedupChunker(final FastCdc cdc, final Executor executor) {
+        this(cdc, executor, (chunk, data) -> { });
+    }
+
+    /**
+     * Construct a chunker passing every hashed chunk with its data to the sink, e.g. to store it.
+     * The sink is called from the executor threads in no particular order, the data buffer is
+     * valid only during the call.
+     * @param cdc Chunk boundary detection
+     * @param executor Executor hashing the chunks
+     * @param sink Consumer of hashed chunks
+     */
+    public DedupChunker(final FastCdc cdc, final Executor executor, final BiConsumer<Chunk, ByteBuffer> sink) {
+        if (cdc.maxSize() > STREAM_WINDOW_LEN / 2) {
+            throw new IllegalArgumentException("Maximum chunk size is too large: " + cdc.maxSize());
+        }
+        this.cdc = cdc;
+        this.executor = executor;
+        this.sink = sink;
+    }
+
+    /**
+     * Chunk and hash all bytes of the stream. The stream is not closed.
+     * @param input Input stream
+     * @return Chunk manifest
+     * @throws IOException if reading the stream fails
+     */
+    public ChunkManifest chunk(final InputStream input) throws IOException {
+        final var pass = new Pass();
+        var window = new byte[STREAM_WINDOW_LEN];
+        var filled = 0;
+        var eof = false;
+        while (!eof) {
+            final var read = input.read(window, filled, window.length - filled);
+            if (read < 0) {
+                eof = true;
+            } else {
+                filled += read;
+            }
+            if (!eof && filled < window.length) {
+                continue;
+            }
+
+            final var cut = pass.cutChunks(ByteBuffer.wrap(window), 0, filled, eof);
+            // The unfinished chunk moves to the next window, this one stays with its chunk tasks.
+            pass.closeWindow(window);
+            final var next = pass.freeBuffer();
+            System.arraycopy(window, cut, next, 0, filled - cut);
+            filled -= cut;
+            window = next;
+        }
+        return pass.manifest();
+    }
+
+    /**
+     * Chunk and hash the file, reading it through memory mapped windows.
+     * @param file Input file
+     * @return Chunk manifest
+     * @throws IOException if reading the file fails
+     */
+    public ChunkManifest chunk(final Path file) throws IOException {
+        final var pass = new Pass();
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final var size = channel.size();
+            var position = 0L;
+            while (position < size) {
+                final var len = (int) Math.min(MAP_WINDOW_LEN, size - position);
+                final var window = channel.map(FileChannel.MapMode.READ_ONLY, position, len);
+                final var last = position + len == size;
+                // The next window starts at the unfinished chunk.
+                position += pass.cutChunks(window, 0, len, last);
+                pass.closeWindow(null);
+            }
+        }
+        return pass.manifest();
+    }
+
+    /**
+     * State of chunking a single input.
+     */
+    private final class Pass {
+        private final PipelinedHasher rootHasher = new PipelinedHasher(new Hasher(), executor);
+        private final List<CompletableFuture<Chunk>> chunks = new ArrayList<>();
+        private final ArrayDeque<Window> windows = new ArrayDeque<>();
+        private final ArrayDeque<byte[]> freeBuffers = new ArrayDeque<>();
+        private int windowStart = 0;
+        private long offset = 0;
+
+        int cutChunks(final ByteBuffer window, final int start, final int end, final boolean last) {
+            var position = start;
+            while (position < end) {
+                final var available = end - position;
+                // Boundaries are final only with the maximum chunk size available.
+                if (!last && available < cdc.maxSize()) {
+                    break;
+                }
+                final var len = cdc.cut(window, position, available);
+                submit(window.slice(position, len));
+                position += len;
+            }
+            return position;
+        }
+
+        private void submit(final ByteBuffer data) {
+            final var chunkOffset = offset;
+            offset += data.remaining();
+            rootHasher.update(data.duplicate());
+            chunks.add(CompletableFuture.supplyAsync(() -> {
+                final var hasher = new Hasher();
+                hasher.update(data.duplicate());
+                final var chunk = new Chunk(chunkOffset, data.remaining(), hasher.finalizeHash());
+                sink.accept(chunk, data.asReadOnlyBuffer());
+                return chunk;
+            }, executor));
+        }
+
+        // Close the current window, waiting for the oldest one when too many are in flight.
+        void closeWindow(final byte[] buffer) {
+            final var pending = chunks.subList(windowStart, chunks.size()).toArray(CompletableFuture[]::new);
+            windows.add(new Window(buffer, CompletableFuture.allOf(pending)));
+            windowStart = chunks.size();
+
+            while (windows.size() > MAX_WINDOWS_IN_FLIGHT || (!windows.isEmpty() && windows.peek().done().isDone())) {
+                final var window = windows.remove();
+                window.done().join();
+                if (window.buffer() != null) {
+                    freeBuffers.add(window.buffer());
+                }
+            }
+        }
+
+        byte[] freeBuffer() {
+            final var free = freeBuffers.poll();
+            return free != null ? free : new byte[STREAM_WINDOW_LEN];
+        }
+
+        ChunkManifest manifest() {
+            final var result = new ArrayList<Chunk>(chunks.size());
+            for (final var chunk : chunks) {
+                result.add(chunk.join());
+            }
+            return new ChunkManifest(result, offset, rootHasher.finalizeHash());
+        }
+    }
+
+    private record Window(byte[] buffer, CompletableFuture<Void> done) { }
+}
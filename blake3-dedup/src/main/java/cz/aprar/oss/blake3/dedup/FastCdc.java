@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cz.aprar.oss.blake3.dedup;
+
+import cz.aprar.oss.blake3.Hasher;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * FastCDC content-defined chunking with normalized chunk sizes. Chunk boundaries depend only
+ * on the content around them, so an insertion or deletion changes just the chunks it touches.
+ */
+public final class FastCdc {
+    /**
+     * Default minimum chunk size, 16 KiB
+     */
+    public static final int DEFAULT_MIN_SIZE = 16 * 1024;
+    /**
+     * Default average chunk size, 64 KiB
+     */
+    public static final int DEFAULT_AVG_SIZE = 64 * 1024;
+    /**
+     * Default maximum chunk size, 256 KiB
+     */
+    public static final int DEFAULT_MAX_SIZE = 256 * 1024;
+
+    private static final long[] GEAR = gearTable();
+
+    private final int minSize;
+    private final int avgSize;
+    private final int maxSize;
+    // Stricter mask below the average size and looser above it (normalization level 2).
+    private final long maskSmall;
+    private final long maskLarge;
+
+    /**
+     * Construct a chunker with the default chunk sizes.
+     */
+    public FastCdc() {
+        this(DEFAULT_MIN_SIZE, DEFAULT_AVG_SIZE, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Construct a chunker.
+     * @param minSize Minimum chunk size
+     * @param avgSize Average chunk size, a power of two
+     * @param maxSize Maximum chunk size
+     */
+    public FastCdc(final int minSize, final int avgSize, final int maxSize) {
+        if (avgSize < 256 || Integer.bitCount(avgSize) != 1) {
+            throw new IllegalArgumentException("Average chunk size must be a power of two of at least 256: " + avgSize);
+        }
+        if (minSize <= 0 || minSize >= avgSize || maxSize <= avgSize) {
+            throw new IllegalArgumentException("Chunk sizes must satisfy 0 < min < avg < max: "
+                    + minSize + ", " + avgSize + ", " + maxSize);
+        }
+        this.minSize = minSize;
+        this.avgSize = avgSize;
+        this.maxSize = maxSize;
+
+        final var bits = Integer.numberOfTrailingZeros(avgSize);
+        this.maskSmall = highBits(bits + 2);
+        this.maskLarge = highBits(bits - 2);
+    }
+
+    /**
+     * @return Minimum chunk size
+     */
+    public int minSize() {
+        return minSize;
+    }
+
+    /**
+     * @return Average chunk size
+     */
+    public int avgSize() {
+        return avgSize;
+    }
+
+    /**
+     * @return Maximum chunk size
+     */
+    public int maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Find the length of the next chunk. All available data is a single chunk when it is
+     * shorter than the maximum chunk size, so fewer bytes should only be passed at the end
+     * of the input.
+     * @param data Input data, read with absolute gets
+     * @param offset Start of the chunk
+     * @param len Number of available bytes
+     * @return Chunk length
+     */
+    public int cut(final ByteBuffer data, final int offset, final int len) {
+        if (len <= minSize) {
+            return len;
+        }
+        final var end = Math.min(len, maxSize);
+        final var normal = Math.min(end, avgSize);
+
+        // Bytes below the minimum size never end a chunk, so they are not hashed at all.
+        var hash = 0L;
+        var i = minSize;
+        for (; i < normal; i++) {
+            hash = (hash << 1) + GEAR[data.get(offset + i) & 0xFF];
+            if ((hash & maskSmall) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < end; i++) {
+            hash = (hash << 1) + GEAR[data.get(offset + i) & 0xFF];
+            if ((hash & maskLarge) == 0) {
+                return i + 1;
+            }
+        }
+        return end;
+    }
+
+    // The rolling hash is shifted left, so its high bits depend on the most input bytes.
+    private static long highBits(final int count) {
+        return -1L << (Long.SIZE - count);
+    }
+
+    // Fixed pseudo-random table, derived so that chunk boundaries never change between versions.
+    private static long[] gearTable() {
+        final var hasher = new Hasher("cz.aprar.oss.blake3.dedup 2026-10-19 FastCDC gear table");
+        final var bytes = ByteBuffer.wrap(hasher.finalizeHash(256 * Long.BYTES)).order(ByteOrder.LITTLE_ENDIAN);
+        final var gear = new long[256];
+        for (int i = 0; i < gear.length; i++) {
+            gear[i] = bytes.getLong();
+        }
+        return gear;
+    }
+}
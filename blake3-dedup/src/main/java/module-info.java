@@ -0,0 +1,4 @@
+module cz.aprar.oss.blake3.dedup {
+    requires transitive cz.aprar.oss.blake3;
+    exports cz.aprar.oss.blake3.dedup;
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cz.aprar.oss.blake3.dedup;
+
+import cz.aprar.oss.blake3.Hasher;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DedupChunkerTest {
+    private static final Executor EXECUTOR = ForkJoinPool.commonPool();
+    private static final FastCdc CDC = new FastCdc(2 * 1024, 8 * 1024, 32 * 1024);
+
+    @TempDir
+    Path dir;
+
+    private static byte[] randomBytes(final int len, final long seed) {
+        final var bytes = new byte[len];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] hash(final byte[] input, final int offset, final int len) {
+        final var hasher = new Hasher();
+        hasher.update(input, offset, len);
+        return hasher.finalizeHash();
+    }
+
+    private static void assertManifest(final byte[] input, final ChunkManifest manifest) {
+        assertEquals(input.length, manifest.length());
+        assertArrayEquals(hash(input, 0, input.length), manifest.rootHash());
+
+        var offset = 0L;
+        for (int i = 0; i < manifest.chunks().size(); i++) {
+            final var chunk = manifest.chunks().get(i);
+            assertEquals(offset, chunk.offset());
+            assertTrue(chunk.length() <= CDC.maxSize());
+            if (i < manifest.chunks().size() - 1) {
+                assertTrue(chunk.length() >= CDC.minSize());
+            }
+            assertArrayEquals(hash(input, (int) offset, chunk.length()), chunk.hash());
+            offset += chunk.length();
+        }
+        assertEquals(input.length, offset);
+    }
+
+    @Test
+    void testStreamAndFile() throws IOException {
+        final var input = randomBytes(20 * 1024 * 1024 + 12345, 1);
+        final var file = dir.resolve("input.bin");
+        Files.write(file, input);
+
+        final var chunker = new DedupChunker(CDC, EXECUTOR);
+        final var streamed = chunker.chunk(new ByteArrayInputStream(input));
+        assertManifest(input, streamed);
+
+        final var mapped = chunker.chunk(file);
+        assertArrayEquals(streamed.rootHash(), mapped.rootHash());
+        assertEquals(streamed.chunks().size(), mapped.chunks().size());
+        for (int i = 0; i < streamed.chunks().size(); i++) {
+            assertArrayEquals(streamed.chunks().get(i).hash(), mapped.chunks().get(i).hash());
+        }
+    }
+
+    @Test
+    void testEmptyInput() throws IOException {
+        final var manifest = new DedupChunker(CDC, EXECUTOR).chunk(new ByteArrayInputStream(new byte[0]));
+        assertEquals(0, manifest.chunks().size());
+        assertArrayEquals(new Hasher().finalizeHash(), manifest.rootHash());
+    }
+
+    @Test
+    void testInsertionKeepsMostChunks() throws IOException {
+        final var original = randomBytes(1024 * 1024, 2);
+        final var modified = new byte[original.length + 100];
+        System.arraycopy(original, 0, modified, 0, 300_000);
+        System.arraycopy(randomBytes(100, 3), 0, modified, 300_000, 100);
+        System.arraycopy(original, 300_000, modified, 300_100, original.length - 300_000);
+
+        final var chunker = new DedupChunker(CDC, EXECUTOR);
+        final var before = chunker.chunk(new ByteArrayInputStream(original));
+        final var after = chunker.chunk(new ByteArrayInputStream(modified));
+        assertManifest(modified, after);
+
+        final var known = new HashSet<ByteBuffer>();
+        before.chunks().forEach(chunk -> known.add(ByteBuffer.wrap(chunk.hash())));
+        final var changed = after.chunks().stream().filter(chunk -> !known.contains(ByteBuffer.wrap(chunk.hash()))).count();
+        assertTrue(changed <= 2, "changed chunks: " + changed);
+    }
+
+    @Test
+    void testSink() throws IOException {
+        final var input = randomBytes(500_000, 4);
+        final var stored = new ConcurrentHashMap<Long, byte[]>();
+        final var chunker = new DedupChunker(CDC, EXECUTOR, (chunk, data) -> {
+            final var bytes = new byte[data.remaining()];
+            data.get(bytes);
+            stored.put(chunk.offset(), bytes);
+        });
+
+        final var manifest = chunker.chunk(new ByteArrayInputStream(input));
+        assertEquals(manifest.chunks().size(), stored.size());
+        for (final var chunk : manifest.chunks()) {
+            assertArrayEquals(chunk.hash(), hash(stored.get(chunk.offset()), 0, chunk.length()));
+        }
+    }
+
+    @Test
+    void testValueSemantics() throws IOException {
+        final var input = randomBytes(100_000, 5);
+        final var chunker = new DedupChunker(CDC, EXECUTOR);
+        final var first = chunker.chunk(new ByteArrayInputStream(input));
+        final var second = chunker.chunk(new ByteArrayInputStream(input));
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+        assertEquals(new HashSet<>(first.chunks()), new HashSet<>(second.chunks()));
+        assertTrue(first.chunks().get(0).toString().contains(HexFormat.of().formatHex(first.chunks().get(0).hash())));
+
+        // Neither the arguments nor the returned hashes alias the state.
+        final var hash = new byte[32];
+        final var chunk = new Chunk(0, 10, hash);
+        hash[0] = 1;
+        chunk.hash()[1] = 1;
+        assertEquals(new Chunk(0, 10, new byte[32]), chunk);
+        assertNotEquals(new Chunk(1, 10, new byte[32]), chunk);
+    }
+}
@@ -18,14 +18,15 @@
  */
 package cz.aprar.oss.blake3;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import static cz.aprar.oss.blake3.Blake3.*;
 
-class ChunkState {
+class ChunkState implements Cloneable {
     private int[] chainingValue;
-    final long chunkCounter;
-    private final byte[] block;
+    long chunkCounter;
+    private byte[] block;
     private byte blockLen;
     private byte blocksCompressed;
     private final int flags;
@@ -39,6 +40,17 @@ class ChunkState {
         this.flags = flags;
     }
 
+    /**
+     * Start a new chunk, reusing the block buffer of this one.
+     */
+    void reset(final int[] keyWords, final long chunkCounter) {
+        this.chainingValue = keyWords;
+        this.chunkCounter = chunkCounter;
+        Arrays.fill(block, (byte)0);
+        this.blockLen = 0;
+        this.blocksCompressed = 0;
+    }
+
     int length() {
         return BLOCK_LEN * blocksCompressed + blockLen;
     }
@@ -51,30 +63,72 @@ class ChunkState {
         }
     }
 
-    void update(final byte[] input) {
-        var counter = 0;
-        while (counter < input.length) {
-            // If the block buffer is full, compress it and clear it. More
-            // input is coming, so this compression is not CHUNK_END.
-            if (blockLen == BLOCK_LEN) {
-                final var blockWords = wordsFromLittleEndianBytes(block);
-                chainingValue = first8Words(compress(
-                        chainingValue,
-                        blockWords,
-                        chunkCounter,
-                        BLOCK_LEN,
-                        flags | startFlag()
-                ));
-                blocksCompressed++;
-                Arrays.fill(block, (byte)0);
-                blockLen = 0;
+    // If the block buffer is full, compress it and clear it. Only called
+    // when more input is coming, so this compression is not CHUNK_END.
+    private void compressFullBlock() {
+        if (blockLen == BLOCK_LEN) {
+            final var blockWords = wordsFromLittleEndianBytes(block);
+            chainingValue = first8Words(compress(
+                    chainingValue,
+                    blockWords,
+                    chunkCounter,
+                    BLOCK_LEN,
+                    flags | startFlag()
+            ));
+            blocksCompressed++;
+            Arrays.fill(block, (byte)0);
+            blockLen = 0;
+        }
+    }
+
+    void update(final byte input) {
+        compressFullBlock();
+        block[blockLen] = input;
+        blockLen++;
+    }
+
+    /**
+     * Add the {@code len} low bytes of the value, at most 8, in little-endian order.
+     */
+    void updateLittleEndian(final long input, final int len) {
+        compressFullBlock();
+        if (blockLen + len <= BLOCK_LEN) {
+            for (int i = 0; i < len; i++) {
+                block[blockLen + i] = (byte) (input >>> (8 * i));
             }
+            blockLen += len;
+        } else {
+            for (int i = 0; i < len; i++) {
+                update((byte) (input >>> (8 * i)));
+            }
+        }
+    }
+
+    void update(final byte[] input, final int offset, final int len) {
+        var counter = 0;
+        while (counter < len) {
+            compressFullBlock();
 
             // Copy input bytes into the block buffer.
             final var want = BLOCK_LEN - blockLen;
-            final var take = Math.min(want, input.length - counter);
+            final var take = Math.min(want, len - counter);
 
-            System.arraycopy(input, counter, block, blockLen, take);
+            System.arraycopy(input, offset + counter, block, blockLen, take);
+            blockLen += take;
+            counter += take;
+        }
+    }
+
+    void update(final ByteBuffer input, final int len) {
+        var counter = 0;
+        while (counter < len) {
+            compressFullBlock();
+
+            // Copy input bytes into the block buffer, advancing the buffer position.
+            final var want = BLOCK_LEN - blockLen;
+            final var take = Math.min(want, len - counter);
+
+            input.get(block, blockLen, take);
             blockLen += take;
             counter += take;
         }
@@ -90,4 +144,15 @@ class ChunkState {
                 flags | startFlag() | CHUNK_END
         );
     }
+
+    @Override
+    protected ChunkState clone() {
+        try {
+            final var copy = (ChunkState) super.clone();
+            copy.block = block.clone();
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
 }
@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cz.aprar.oss.blake3;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static cz.aprar.oss.blake3.Blake3.*;
+
+/**
+ * Thread-safe hasher for input arriving as segments in arbitrary order, e.g. ranged downloads.
+ * Every segment starts at a chunk boundary (a multiple of 1024 bytes) and all but the last one
+ * are a whole number of chunks long. Segments are hashed into subtree chaining values right
+ * away by the calling thread, sibling subtrees are merged as soon as both are done, without a
+ * global lock. Once all segments are added, only the few subtrees along the right edge of the
+ * tree remain to be merged by {@link #finalizeHash(long, int)}.
+ */
+public class ConcurrentHasher {
+    private final int[] keyWords;
+    private final int flags;
+    // Subtrees waiting for their sibling, keyed by their parent node.
+    private final ConcurrentHashMap<Long, int[]> waiting;
+    // Children of the nodes on the left edge of the tree, one of them becomes the root.
+    private final ConcurrentHashMap<Integer, int[][]> leftEdge;
+    // The first chunk is the root when the input is a single chunk.
+    private final AtomicReference<byte[]> firstChunk;
+    private final AtomicLong finalSegmentEnd;
+    private final AtomicLong received;
+
+    /**
+     * Construct a concurrent hasher.
+     * @param hasher Hasher without any input, defines the hash mode
+     */
+    public ConcurrentHasher(final Hasher hasher) {
+        if (!hasher.isEmpty()) {
+            throw new IllegalArgumentException("Hasher must not contain any input");
+        }
+        this.keyWords = hasher.keyWords();
+        this.flags = hasher.flags();
+        this.waiting = new ConcurrentHashMap<>();
+        this.leftEdge = new ConcurrentHashMap<>();
+        this.firstChunk = new AtomicReference<>();
+        this.finalSegmentEnd = new AtomicLong(-1);
+        this.received = new AtomicLong();
+    }
+
+    /**
+     * Add the whole array as the segment at the given input offset.
+     * @param offset Input offset of the segment, a multiple of 1024
+     * @param input Segment data
+     */
+    public void update(final long offset, final byte[] input) {
+        update(offset, input, 0, input.length);
+    }
+
+    /**
+     * Add a part of the array as the segment at the given input offset. Can be called
+     * from any number of threads, every input byte has to be added exactly once.
+     * @param offset Input offset of the segment, a multiple of 1024
+     * @param input Segment data
+     * @param inputOffset Offset of the first segment byte in the array
+     * @param len Segment length, a multiple of 1024 unless it is the last segment
+     */
+    public void update(final long offset, final byte[] input, final int inputOffset, final int len) {
+        if (offset < 0 || offset % CHUNK_LEN != 0) {
+            throw new IllegalArgumentException("Segment offset is not a multiple of " + CHUNK_LEN + ": " + offset);
+        }
+        if (len % CHUNK_LEN != 0 && !finalSegmentEnd.compareAndSet(-1, offset + len)) {
+            throw new IllegalArgumentException("Only the last segment may end inside a chunk, already ends at "
+                    + finalSegmentEnd.get());
+        }
+
+        var chunk = offset / CHUNK_LEN;
+        var position = inputOffset;
+        var remaining = len;
+
+        // The first chunk is hashed alone, so every merge along the left edge is recorded.
+        if (chunk == 0 && remaining > 0) {
+            final var take = Math.min(CHUNK_LEN, remaining);
+            firstChunk.set(Arrays.copyOfRange(input, position, position + take));
+            if (take == CHUNK_LEN) {
+                addSubtree(0, 0, chunkChainingValue(input, position, take, 0));
+            }
+            chunk++;
+            position += take;
+            remaining -= take;
+        }
+
+        while (remaining >= CHUNK_LEN) {
+            // The largest subtree aligned at this chunk that fits into the segment.
+            var chunks = Long.lowestOneBit(chunk);
+            while (chunks > remaining / CHUNK_LEN) {
+                chunks >>= 1;
+            }
+            final var cv = Hasher.subtreeChainingValue(input, position, (int) chunks, chunk, keyWords, flags);
+            addSubtree(Long.numberOfTrailingZeros(chunks), chunk / chunks, cv);
+            chunk += chunks;
+            position += (int) chunks * CHUNK_LEN;
+            remaining -= (int) chunks * CHUNK_LEN;
+        }
+
+        if (remaining > 0) {
+            addSubtree(0, chunk, chunkChainingValue(input, position, remaining, chunk));
+        }
+        received.addAndGet(len);
+    }
+
+    /**
+     * @return Number of input bytes added so far
+     */
+    public long length() {
+        return received.get();
+    }
+
+    /**
+     * Finalize the hash and write any number of output bytes. All segments of the input have
+     * to be added, and all {@code update} calls have to return before this call.
+     * @param totalLength Input length
+     * @param size Hash size
+     * @return Hash data
+     */
+    public byte[] finalizeHash(final long totalLength, final int size) {
+        final var length = received.get();
+        if (length != totalLength) {
+            throw new IllegalStateException("Received " + length + " of " + totalLength + " input bytes");
+        }
+        final var segmentEnd = finalSegmentEnd.get();
+        if (segmentEnd != -1 && segmentEnd != totalLength) {
+            throw new IllegalStateException("Segment ending inside a chunk at " + segmentEnd + " is not the last one");
+        }
+
+        final var totalChunks = Math.max(1, (totalLength + CHUNK_LEN - 1) / CHUNK_LEN);
+        if (totalChunks == 1) {
+            final var chunkState = new ChunkState(keyWords, 0, flags);
+            final var bytes = firstChunk.get();
+            if (bytes != null) {
+                chunkState.update(bytes, 0, bytes.length);
+            }
+            return chunkState.output().rootOutputBytes(size);
+        }
+        if (Long.bitCount(totalChunks) == 1) {
+            final var children = leftEdge.get(Long.numberOfTrailingZeros(totalChunks));
+            return Hasher.parentOutput(children[0], children[1], keyWords, flags).rootOutputBytes(size);
+        }
+
+        // The input is covered by one complete subtree per bit of the chunk count, largest first.
+        final var cvs = new int[Long.bitCount(totalChunks)][];
+        var start = 0L;
+        for (int i = 0; i < cvs.length; i++) {
+            final var chunks = Long.highestOneBit(totalChunks - start);
+            final var level = Long.numberOfTrailingZeros(chunks);
+            final var index = start / chunks;
+            cvs[i] = waiting.get(nodeKey(level + 1, index >>> 1));
+            start += chunks;
+        }
+
+        // Merge them along the right edge of the tree, like Hasher.finalizeHash.
+        var rightCv = cvs[cvs.length - 1];
+        for (int i = cvs.length - 2; i > 0; i--) {
+            rightCv = Hasher.parentCv(cvs[i], rightCv, keyWords, flags);
+        }
+        return Hasher.parentOutput(cvs[0], rightCv, keyWords, flags).rootOutputBytes(size);
+    }
+
+    /**
+     * Finalize the hash and write 32 output bytes.
+     * @param totalLength Input length
+     * @return Hash data
+     */
+    public byte[] finalizeHash(final long totalLength) {
+        return finalizeHash(totalLength, OUT_LEN);
+    }
+
+    private int[] chunkChainingValue(final byte[] input, final int offset, final int len, final long chunkCounter) {
+        final var chunkState = new ChunkState(keyWords, chunkCounter, flags);
+        chunkState.update(input, offset, len);
+        return chunkState.output().chainingValue();
+    }
+
+    private static long nodeKey(final int level, final long index) {
+        return ((long) level << 56) | index;
+    }
+
+    // Merge the subtree with its sibling when the sibling is already done, and continue
+    // up the tree. Otherwise leave it for the sibling to find.
+    private void addSubtree(final int level, final long index, final int[] cv) {
+        var currentLevel = level;
+        var currentIndex = index;
+        var currentCv = cv;
+        while (true) {
+            final var parentKey = nodeKey(currentLevel + 1, currentIndex >>> 1);
+            final var sibling = waiting.putIfAbsent(parentKey, currentCv);
+            if (sibling == null) {
+                return;
+            }
+            // Only the two children share the key, the sibling left it for this thread.
+            waiting.remove(parentKey);
+
+            final var left = (currentIndex & 1) == 0 ? currentCv : sibling;
+            final var right = (currentIndex & 1) == 0 ? sibling : currentCv;
+            currentLevel++;
+            currentIndex >>>= 1;
+            if (currentIndex == 0) {
+                leftEdge.put(currentLevel, new int[][] {left, right});
+            }
+            currentCv = Hasher.parentCv(left, right, keyWords, flags);
+        }
+    }
+}
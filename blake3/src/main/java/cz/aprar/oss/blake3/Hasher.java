@@ -18,18 +18,21 @@
  */
 package cz.aprar.oss.blake3;
 
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
 
 import static cz.aprar.oss.blake3.Blake3.*;
 
-public class Hasher {
+public class Hasher implements Cloneable {
     private ChunkState chunkState;
     private final int[] keyWords;
-    private final int[][] cvStack; // Space for 54 subtree chaining values:
+    private int[][] cvStack; // Space for 54 subtree chaining values:
     private byte cvStackLen;  // 2^54 * CHUNK_LEN = 2^64
     private final int flags;
+    private Interleaved interleaved; // Created on first multi-chunk update
 
-    private Hasher(final int[] keyWords, final int flags) {
+    Hasher(final int[] keyWords, final int flags) {
         this.chunkState = new ChunkState(keyWords, 0, flags);
         this.keyWords = keyWords;
         this.cvStack = new int[54][8];
@@ -58,15 +61,13 @@ public class Hasher {
      * @param context Context string
      */
     public Hasher(final String context) {
-        final var contextHasher = new Hasher(IV, DERIVE_KEY_CONTEXT);
-        contextHasher.update(context.getBytes());
-        final var contextKey = contextHasher.finalizeHash(KEY_LEN);
+        this(contextKeyWords(context), DERIVE_KEY_MATERIAL);
+    }
 
-        this.keyWords = wordsFromLittleEndianBytes(contextKey);
-        this.chunkState = new ChunkState(this.keyWords, 0, DERIVE_KEY_MATERIAL);
-        this.cvStack = new int[8][54];
-        this.cvStackLen = 0;
-        this.flags = DERIVE_KEY_MATERIAL;
+    private static int[] contextKeyWords(final String context) {
+        final var contextHasher = new Hasher(IV, DERIVE_KEY_CONTEXT);
+        contextHasher.update(context.getBytes(StandardCharsets.UTF_8));
+        return wordsFromLittleEndianBytes(contextHasher.finalizeHash(KEY_LEN));
     }
 
     private void pushStack(final int[] cv) {
@@ -79,7 +80,7 @@ public class Hasher {
         return cvStack[cvStackLen];
     }
 
-    private static Output parentOutput(
+    static Output parentOutput(
             final int[] leftChildCv,
             final int[] rightChildCv,
             final int[] keyWords,
@@ -98,7 +99,7 @@ public class Hasher {
         );
     }
 
-    private static int[] parentCv(
+    static int[] parentCv(
             final int[] leftChildCv,
             final int[] rightChildCv,
             final int[] keyWords,
@@ -123,38 +124,313 @@ public class Hasher {
         pushStack(newCv);
     }
 
+    int[] keyWords() {
+        return keyWords;
+    }
+
+    int flags() {
+        return flags;
+    }
+
+    boolean isEmpty() {
+        return cvStackLen == 0 && chunkState.chunkCounter == 0 && chunkState.length() == 0;
+    }
+
+    /**
+     * Add the chaining value of a complete subtree of {@code chunks} chunks, a power
+     * of two, hashed elsewhere. The hasher has to be at a chunk boundary aligned to
+     * the subtree size, a full current chunk is finalized first.
+     */
+    void addSubtreeChainingValue(final int[] subtreeCv, final long chunks) {
+        finalizeFullChunk();
+        final var chunkCounter = chunkState.chunkCounter;
+        if (chunkState.length() != 0 || chunkCounter % chunks != 0) {
+            throw new IllegalStateException("Subtree of " + chunks + " chunks is not aligned at chunk " + chunkCounter);
+        }
+        final var totalChunks = chunkCounter + chunks;
+        addChunkChainingValue(subtreeCv, totalChunks >>> Long.numberOfTrailingZeros(chunks));
+        chunkState.reset(keyWords, totalChunks);
+    }
+
+    /**
+     * Compute the chaining value of a complete subtree of {@code chunks} chunks, a power
+     * of two, starting at the given chunk counter. The subtree must not be the root.
+     */
+    static int[] subtreeChainingValue(
+            final byte[] input,
+            final int offset,
+            final int chunks,
+            final long chunkCounter,
+            final int[] keyWords,
+            final int flags
+    ) {
+        // Chunk counts are powers of two, so either all chunks are hashed interleaved or none.
+        final var interleaved = chunks >= Interleaved.LANES ? new Interleaved() : null;
+        final var chunkState = new ChunkState(keyWords, chunkCounter, flags);
+        final var stack = new int[Integer.SIZE][];
+        var stackLen = 0;
+        var i = 0;
+        while (i < chunks) {
+            final int[][] chunkCvs;
+            if (interleaved != null) {
+                chunkCvs = interleaved.chunkChainingValues(input, offset + i * CHUNK_LEN, chunkCounter + i, keyWords, flags);
+            } else {
+                chunkState.reset(keyWords, chunkCounter + i);
+                chunkState.update(input, offset + i * CHUNK_LEN, CHUNK_LEN);
+                chunkCvs = new int[][] {chunkState.output().chainingValue()};
+            }
+
+            for (var cv : chunkCvs) {
+                i++;
+                // Same merging as addChunkChainingValue, relative to the subtree start.
+                var totalChunks = i;
+                while ((totalChunks & 1) == 0) {
+                    stackLen--;
+                    cv = parentCv(stack[stackLen], cv, keyWords, flags);
+                    totalChunks >>= 1;
+                }
+                stack[stackLen] = cv;
+                stackLen++;
+            }
+        }
+        return stack[0];
+    }
+
+    // If the current chunk is complete, finalize it and reset the chunk
+    // state. Only called when more input is coming, so this chunk is not ROOT.
+    private void finalizeFullChunk() {
+        if (chunkState.length() == CHUNK_LEN) {
+            final var chunkCv = chunkState.output().chainingValue();
+            final var totalChunks = chunkState.chunkCounter + 1L;
+            addChunkChainingValue(chunkCv, totalChunks);
+            chunkState.reset(keyWords, totalChunks);
+        }
+    }
+
+    private Interleaved interleaved() {
+        if (interleaved == null) {
+            interleaved = new Interleaved();
+        }
+        return interleaved;
+    }
+
+    // Add the chaining values of whole chunks hashed interleaved, starting at the current chunk.
+    private void addChunkChainingValues(final int[][] chunkCvs) {
+        final var chunkCounter = chunkState.chunkCounter;
+        for (int i = 0; i < chunkCvs.length; i++) {
+            addChunkChainingValue(chunkCvs[i], chunkCounter + i + 1L);
+        }
+        chunkState.reset(keyWords, chunkCounter + chunkCvs.length);
+    }
+
     /**
      * Add input to the hash state. This can be called any number of times.
      * @param input Hash input
      */
     public void update(final byte[] input) {
+        update(input, 0, input.length);
+    }
+
+    /**
+     * Add a part of the input array to the hash state.
+     * @param input Hash input
+     * @param offset Offset of the first byte to hash
+     * @param len Number of bytes to hash
+     */
+    public void update(final byte[] input, final int offset, final int len) {
         var counter = 0;
-        while (counter < input.length) {
-            // If the current chunk is complete, finalize it and reset the
-            // chunk state. More input is coming, so this chunk is not ROOT.
-            if (chunkState.length() == CHUNK_LEN) {
-                final var chunkCv = chunkState.output().chainingValue();
-                final var totalChunks = chunkState.chunkCounter + 1L;
-                addChunkChainingValue(chunkCv, totalChunks);
-                chunkState = new ChunkState(keyWords, totalChunks, flags);
+        while (counter < len) {
+            finalizeFullChunk();
+
+            // Hash whole chunks interleaved while more input follows them, so none
+            // of them is the last chunk that has to stay in the chunk state.
+            if (chunkState.length() == 0 && len - counter > Interleaved.LANES * CHUNK_LEN) {
+                final var chunkCvs = interleaved().chunkChainingValues(
+                        input, offset + counter, chunkState.chunkCounter, keyWords, flags
+                );
+                addChunkChainingValues(chunkCvs);
+                counter += chunkCvs.length * CHUNK_LEN;
+                continue;
             }
 
             // Compress input bytes into the current chunk state.
             final var want = CHUNK_LEN - chunkState.length();
-            final var take = Math.min(want, input.length - counter);
+            final var take = Math.min(want, len - counter);
 
-            final var chunk = Arrays.copyOfRange(input, counter, counter + take);
-            chunkState.update(chunk);
+            chunkState.update(input, offset + counter, take);
             counter += take;
         }
     }
 
     /**
-     * Finalize the hash and write any number of output bytes.
-     * @param size Hash size
-     * @return Hash data
+     * Add a single byte to the hash state.
+     * @param input Hash input
      */
-    public byte[] finalizeHash(final int size) {
+    public void update(final byte input) {
+        finalizeFullChunk();
+        chunkState.update(input);
+    }
+
+    /**
+     * Add all remaining bytes of the buffer to the hash state. Direct buffers
+     * are read without an intermediate copy. The buffer position is advanced
+     * to its limit.
+     * @param input Hash input
+     */
+    public void update(final ByteBuffer input) {
+        if (input.hasArray()) {
+            final var len = input.remaining();
+            update(input.array(), input.arrayOffset() + input.position(), len);
+            input.position(input.position() + len);
+            return;
+        }
+
+        while (input.hasRemaining()) {
+            finalizeFullChunk();
+
+            // Same as the interleaved path of update(byte[], int, int).
+            if (chunkState.length() == 0 && input.remaining() > Interleaved.LANES * CHUNK_LEN) {
+                final var chunkCvs = interleaved().chunkChainingValues(
+                        input, input.position(), chunkState.chunkCounter, keyWords, flags
+                );
+                addChunkChainingValues(chunkCvs);
+                input.position(input.position() + chunkCvs.length * CHUNK_LEN);
+                continue;
+            }
+
+            final var want = CHUNK_LEN - chunkState.length();
+            final var take = Math.min(want, input.remaining());
+
+            chunkState.update(input, take);
+        }
+    }
+
+    // Add the len low bytes of the value in little-endian order, splitting
+    // them when they cross the end of the current chunk.
+    private void updateLittleEndian(final long input, final int len) {
+        finalizeFullChunk();
+        final var take = Math.min(len, CHUNK_LEN - chunkState.length());
+        chunkState.updateLittleEndian(input, take);
+        if (take < len) {
+            finalizeFullChunk();
+            chunkState.updateLittleEndian(input >>> (8 * take), len - take);
+        }
+    }
+
+    /**
+     * Add an int to the hash state as 4 little-endian bytes.
+     * @param input Hash input
+     */
+    public void updateInt(final int input) {
+        updateLittleEndian(input, Integer.BYTES);
+    }
+
+    /**
+     * Add a long to the hash state as 8 little-endian bytes.
+     * @param input Hash input
+     */
+    public void updateLong(final long input) {
+        updateLittleEndian(input, Long.BYTES);
+    }
+
+    /**
+     * Add a UUID to the hash state as its most and least significant bits,
+     * each as 8 little-endian bytes.
+     * @param input Hash input
+     */
+    public void updateUuid(final UUID input) {
+        updateLong(input.getMostSignificantBits());
+        updateLong(input.getLeastSignificantBits());
+    }
+
+    /**
+     * Add the UTF-8 encoding of the characters to the hash state, encoded the same
+     * way as {@link String#getBytes(java.nio.charset.Charset)}.
+     * @param input Hash input
+     */
+    public void updateUtf8(final CharSequence input) {
+        updateUtf8(input, false);
+    }
+
+    /**
+     * Add the UTF-8 encoding of the characters to the hash state, optionally prefixed
+     * with the length of the encoding as 8 little-endian bytes. The prefix keeps the
+     * boundaries of consecutive fields unambiguous.
+     * @param input Hash input
+     * @param lengthPrefix Whether to add the length of the encoding first
+     */
+    public void updateUtf8(final CharSequence input, final boolean lengthPrefix) {
+        if (lengthPrefix) {
+            updateLong(utf8Length(input));
+        }
+
+        // Pack the encoded bytes into a long and add them 8 at most at a time.
+        var packed = 0L;
+        var packedLen = 0;
+        final var len = input.length();
+        for (int i = 0; i < len; i++) {
+            final var c = input.charAt(i);
+            int encoded;
+            int encodedLen;
+            if (c < 0x80) {
+                encoded = c;
+                encodedLen = 1;
+            } else if (c < 0x800) {
+                encoded = (0xc0 | (c >>> 6)) | (0x80 | (c & 0x3f)) << 8;
+                encodedLen = 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(input.charAt(i + 1))) {
+                final var codePoint = Character.toCodePoint(c, input.charAt(++i));
+                encoded = (0xf0 | (codePoint >>> 18))
+                        | (0x80 | ((codePoint >>> 12) & 0x3f)) << 8
+                        | (0x80 | ((codePoint >>> 6) & 0x3f)) << 16
+                        | (0x80 | (codePoint & 0x3f)) << 24;
+                encodedLen = 4;
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogates are replaced like String.getBytes does.
+                encoded = '?';
+                encodedLen = 1;
+            } else {
+                encoded = (0xe0 | (c >>> 12))
+                        | (0x80 | ((c >>> 6) & 0x3f)) << 8
+                        | (0x80 | (c & 0x3f)) << 16;
+                encodedLen = 3;
+            }
+
+            if (packedLen + encodedLen > Long.BYTES) {
+                updateLittleEndian(packed, packedLen);
+                packed = 0;
+                packedLen = 0;
+            }
+            packed |= (encoded & 0xffffffffL) << (8 * packedLen);
+            packedLen += encodedLen;
+        }
+        if (packedLen > 0) {
+            updateLittleEndian(packed, packedLen);
+        }
+    }
+
+    private static long utf8Length(final CharSequence input) {
+        var utf8Length = 0L;
+        final var len = input.length();
+        for (int i = 0; i < len; i++) {
+            final var c = input.charAt(i);
+            if (c < 0x80) {
+                utf8Length += 1;
+            } else if (c < 0x800) {
+                utf8Length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(input.charAt(i + 1))) {
+                utf8Length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                utf8Length += 1;
+            } else {
+                utf8Length += 3;
+            }
+        }
+        return utf8Length;
+    }
+
+    private Output rootOutput() {
         // Starting with the Output from the current chunk, compute all the
         // parent chaining values along the right edge of the tree, until we
         // have the root Output.
@@ -169,7 +445,16 @@ public class Hasher {
                     flags
             );
         }
-        return output.rootOutputBytes(size);
+        return output;
+    }
+
+    /**
+     * Finalize the hash and write any number of output bytes.
+     * @param size Hash size
+     * @return Hash data
+     */
+    public byte[] finalizeHash(final int size) {
+        return rootOutput().rootOutputBytes(size);
     }
 
     /**
@@ -179,4 +464,43 @@ public class Hasher {
     public byte[] finalizeHash() {
         return finalizeHash(OUT_LEN);
     }
+
+    /**
+     * Finalize the hash and write any number of output bytes into the given array.
+     * The hash state is not modified, so more input can still be added.
+     * @param out Output array
+     * @param offset Offset in the output array
+     * @param len Hash size
+     */
+    public void finalizeHash(final byte[] out, final int offset, final int len) {
+        if (offset < 0 || len < 0 || offset > out.length - len) {
+            throw new IndexOutOfBoundsException("Hash of " + len + " bytes does not fit at offset " + offset);
+        }
+        rootOutput().rootOutputBytes(out, offset, len);
+    }
+
+    /**
+     * Reset the hasher to its initial state, keeping the key and mode.
+     */
+    public void reset() {
+        chunkState.reset(keyWords, 0);
+        cvStackLen = 0;
+    }
+
+    /**
+     * Create an independent copy of the current hash state.
+     * @return Hasher copy
+     */
+    @Override
+    public Hasher clone() {
+        try {
+            final var copy = (Hasher) super.clone();
+            copy.chunkState = chunkState.clone();
+            copy.cvStack = cvStack.clone();
+            copy.interleaved = null;
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
 }
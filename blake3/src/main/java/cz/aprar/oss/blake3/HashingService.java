@@ -0,0 +1,380 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cz.aprar.oss.blake3;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static cz.aprar.oss.blake3.Blake3.*;
+
+/**
+ * Shared service hashing many concurrent jobs of different sizes on one work-stealing pool.
+ * <p>
+ * Inputs of at most one group of 64 chunks are small jobs, hashed by a single task. Larger
+ * inputs are split into groups hashed into subtree chaining values in parallel, like in
+ * {@link PipelinedHasher}, and merged in order once all groups are done. The workers always
+ * take a waiting small job before the next group of a large job, so a small job waits for
+ * at most one group per worker. Large jobs take turns group by group, each with at most
+ * {@code maxJobParallelism} groups being hashed at once.
+ * <p>
+ * Each lane accepts at most {@code maxPendingJobs} unfinished jobs, further submissions
+ * block until a job of the lane completes. Instances are thread-safe.
+ */
+public class HashingService implements AutoCloseable {
+    private static final int GROUP_CHUNKS = 64;
+    private static final int GROUP_LEN = GROUP_CHUNKS * CHUNK_LEN;
+
+    private final ForkJoinPool pool;
+    private final boolean ownPool;
+    private final int maxJobParallelism;
+    private final int maxPendingJobs;
+    private final Semaphore smallPermits;
+    private final Semaphore largePermits;
+    // Scheduling state, guarded by the lock.
+    private final Object lock = new Object();
+    private final ArrayDeque<SmallJob> smallJobs = new ArrayDeque<>();
+    private final ArrayDeque<LargeJob> largeJobs = new ArrayDeque<>();
+    private int activeWorkers;
+    private boolean closed;
+    // Statistics, pending jobs are counted down before their results are completed.
+    private final long startNanos;
+    private final AtomicInteger pendingSmallJobs = new AtomicInteger();
+    private final AtomicInteger pendingLargeJobs = new AtomicInteger();
+    private final AtomicLong completedJobs = new AtomicLong();
+    private final AtomicLong hashedBytes = new AtomicLong();
+
+    /**
+     * Snapshot of the service statistics.
+     * @param pendingSmallJobs Small jobs submitted and not completed
+     * @param pendingLargeJobs Large jobs submitted and not completed
+     * @param activeWorkers Workers running on the pool
+     * @param completedJobs Jobs completed since the service started
+     * @param hashedBytes Bytes of the completed jobs
+     * @param bytesPerSecond Average throughput since the service started
+     */
+    public record Stats(
+            int pendingSmallJobs,
+            int pendingLargeJobs,
+            int activeWorkers,
+            long completedJobs,
+            long hashedBytes,
+            double bytesPerSecond
+    ) {
+    }
+
+    private record SmallJob(Hasher hasher, byte[] input, int offset, int len, CompletableFuture<byte[]> result) {
+    }
+
+    private static final class LargeJob {
+        private final Hasher hasher;
+        private final byte[] input;
+        private final int offset;
+        private final int len;
+        private final CompletableFuture<byte[]> result;
+        private final int[][] groupCvs;
+        // Guarded by the service lock.
+        private int nextGroup;
+        private int inFlight;
+        private int remaining;
+        private RuntimeException failure;
+
+        private LargeJob(final Hasher hasher, final byte[] input, final int offset, final int len, final CompletableFuture<byte[]> result) {
+            this.hasher = hasher;
+            this.input = input;
+            this.offset = offset;
+            this.len = len;
+            this.result = result;
+            // At least one byte is left after the groups, the last chunk has to stay in the hasher.
+            this.groupCvs = new int[(len - 1) / GROUP_LEN][];
+            this.remaining = groupCvs.length;
+        }
+    }
+
+    /**
+     * Construct a service with its own pool of one worker per processor, each job using at
+     * most all of them and each lane accepting 1024 pending jobs.
+     */
+    public HashingService() {
+        this(new ForkJoinPool(), true, Runtime.getRuntime().availableProcessors(), 1024);
+    }
+
+    /**
+     * Construct a service running on the given pool. The pool is not shut down by {@link #close()}.
+     * @param pool Pool running the hashing tasks
+     * @param maxJobParallelism Maximum number of groups of one large job hashed at once
+     * @param maxPendingJobs Maximum number of unfinished jobs of each lane
+     */
+    public HashingService(final ForkJoinPool pool, final int maxJobParallelism, final int maxPendingJobs) {
+        this(pool, false, maxJobParallelism, maxPendingJobs);
+    }
+
+    private HashingService(final ForkJoinPool pool, final boolean ownPool, final int maxJobParallelism, final int maxPendingJobs) {
+        if (maxJobParallelism <= 0) {
+            throw new IllegalArgumentException("Maximum job parallelism must be positive: " + maxJobParallelism);
+        }
+        if (maxPendingJobs <= 0) {
+            throw new IllegalArgumentException("Maximum pending jobs must be positive: " + maxPendingJobs);
+        }
+        this.pool = pool;
+        this.ownPool = ownPool;
+        this.maxJobParallelism = maxJobParallelism;
+        this.maxPendingJobs = maxPendingJobs;
+        this.smallPermits = new Semaphore(maxPendingJobs);
+        this.largePermits = new Semaphore(maxPendingJobs);
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Hash the input, blocking while the lane of the job has too many pending jobs.
+     * The input must not be modified until the returned future completes.
+     * @param hasher Hasher without any input, defines the hash mode
+     * @param input Hash input
+     * @return Future of the 32-byte hash
+     * @throws InterruptedException When interrupted while waiting for the lane
+     */
+    public CompletableFuture<byte[]> submit(final Hasher hasher, final byte[] input) throws InterruptedException {
+        return submit(hasher, input, 0, input.length);
+    }
+
+    /**
+     * Hash a part of the input array, blocking while the lane of the job has too many
+     * pending jobs. The input must not be modified until the returned future completes.
+     * @param hasher Hasher without any input, defines the hash mode
+     * @param input Hash input
+     * @param offset Offset of the first byte to hash
+     * @param len Number of bytes to hash
+     * @return Future of the 32-byte hash
+     * @throws InterruptedException When interrupted while waiting for the lane
+     */
+    public CompletableFuture<byte[]> submit(
+            final Hasher hasher,
+            final byte[] input,
+            final int offset,
+            final int len
+    ) throws InterruptedException {
+        if (!hasher.isEmpty()) {
+            throw new IllegalArgumentException("Hasher must not contain any input");
+        }
+        if (offset < 0 || len < 0 || offset > input.length - len) {
+            throw new IndexOutOfBoundsException("Range of " + len + " bytes at offset " + offset + " out of " + input.length);
+        }
+
+        final var result = new CompletableFuture<byte[]>();
+        final var small = len <= GROUP_LEN;
+        final var permits = small ? smallPermits : largePermits;
+        permits.acquire();
+        synchronized (lock) {
+            if (closed) {
+                permits.release();
+                throw new RejectedExecutionException("Hashing service is closed");
+            }
+            if (small) {
+                pendingSmallJobs.incrementAndGet();
+                smallJobs.add(new SmallJob(hasher.clone(), input, offset, len, result));
+            } else {
+                pendingLargeJobs.incrementAndGet();
+                largeJobs.add(new LargeJob(hasher.clone(), input, offset, len, result));
+            }
+            signalWork();
+        }
+        return result;
+    }
+
+    // Start another worker if the pool has room for it. Called with the lock held.
+    private void signalWork() {
+        if (activeWorkers < pool.getParallelism()) {
+            activeWorkers++;
+            pool.execute(this::runWorker);
+        }
+    }
+
+    private void runWorker() {
+        while (true) {
+            final Runnable task;
+            synchronized (lock) {
+                task = nextTask();
+                if (task == null) {
+                    activeWorkers--;
+                    return;
+                }
+                if (!smallJobs.isEmpty() || !largeJobs.isEmpty()) {
+                    signalWork();
+                }
+            }
+            task.run();
+        }
+    }
+
+    // Small jobs first, then the next group of the large job in turn. Called with the lock held.
+    private Runnable nextTask() {
+        final var smallJob = smallJobs.poll();
+        if (smallJob != null) {
+            return () -> runSmallJob(smallJob);
+        }
+
+        final var largeJob = largeJobs.poll();
+        if (largeJob == null) {
+            return null;
+        }
+        final var group = largeJob.nextGroup++;
+        largeJob.inFlight++;
+        // Back to the end of the queue, unless all its groups are started or it is at its cap.
+        if (largeJob.nextGroup < largeJob.groupCvs.length && largeJob.inFlight < maxJobParallelism) {
+            largeJobs.add(largeJob);
+        }
+        return () -> runGroup(largeJob, group);
+    }
+
+    private void runSmallJob(final SmallJob job) {
+        try {
+            byte[] hash = null;
+            RuntimeException failure = null;
+            try {
+                job.hasher().update(job.input(), job.offset(), job.len());
+                hash = job.hasher().finalizeHash();
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            complete(pendingSmallJobs, job.result(), hash, failure, job.len());
+        } finally {
+            smallPermits.release();
+        }
+    }
+
+    private void runGroup(final LargeJob job, final int group) {
+        int[] groupCv = null;
+        RuntimeException failure = null;
+        try {
+            groupCv = Hasher.subtreeChainingValue(
+                    job.input,
+                    job.offset + group * GROUP_LEN,
+                    GROUP_CHUNKS,
+                    (long) group * GROUP_CHUNKS,
+                    job.hasher.keyWords(),
+                    job.hasher.flags()
+            );
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+
+        final boolean last;
+        synchronized (lock) {
+            job.groupCvs[group] = groupCv;
+            if (failure != null && job.failure == null) {
+                job.failure = failure;
+            }
+            job.inFlight--;
+            // The job left the queue at its cap, take it back now that a group is done.
+            if (job.nextGroup < job.groupCvs.length && job.inFlight == maxJobParallelism - 1) {
+                largeJobs.add(job);
+            }
+            job.remaining--;
+            last = job.remaining == 0;
+            // All groups are done, so the failure of any of them is visible here.
+            failure = job.failure;
+        }
+
+        if (last) {
+            try {
+                byte[] hash = null;
+                if (failure == null) {
+                    try {
+                        for (var cv : job.groupCvs) {
+                            job.hasher.addSubtreeChainingValue(cv, GROUP_CHUNKS);
+                        }
+                        final var tail = job.groupCvs.length * GROUP_LEN;
+                        job.hasher.update(job.input, job.offset + tail, job.len - tail);
+                        hash = job.hasher.finalizeHash();
+                    } catch (RuntimeException e) {
+                        failure = e;
+                    }
+                }
+                complete(pendingLargeJobs, job.result, hash, failure, job.len);
+            } finally {
+                largePermits.release();
+            }
+        }
+    }
+
+    // Count the job as done before the caller can see its result, so stats() taken
+    // after the result never counts it as pending.
+    private void complete(
+            final AtomicInteger pending,
+            final CompletableFuture<byte[]> result,
+            final byte[] hash,
+            final RuntimeException failure,
+            final int len
+    ) {
+        if (failure == null) {
+            completedJobs.incrementAndGet();
+            hashedBytes.addAndGet(len);
+        }
+        pending.decrementAndGet();
+        if (failure == null) {
+            result.complete(hash);
+        } else {
+            result.completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * Take a snapshot of the service statistics.
+     * @return Statistics
+     */
+    public Stats stats() {
+        final int workers;
+        synchronized (lock) {
+            workers = activeWorkers;
+        }
+        final var bytes = hashedBytes.get();
+        final var seconds = (System.nanoTime() - startNanos) / 1e9;
+        return new Stats(
+                pendingSmallJobs.get(),
+                pendingLargeJobs.get(),
+                workers,
+                completedJobs.get(),
+                bytes,
+                seconds > 0 ? bytes / seconds : 0
+        );
+    }
+
+    /**
+     * Stop accepting jobs and wait until all pending jobs complete. A pool created
+     * by the service is shut down.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+        }
+        smallPermits.acquireUninterruptibly(maxPendingJobs);
+        largePermits.acquireUninterruptibly(maxPendingJobs);
+        // Blocked and later submissions take a permit, see the service closed and give it back.
+        smallPermits.release(maxPendingJobs);
+        largePermits.release(maxPendingJobs);
+        if (ownPool) {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cz.aprar.oss.blake3;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static cz.aprar.oss.blake3.Blake3.*;
+
+/**
+ * Scalar engine compressing {@link #LANES} independent blocks in one loop. The state and
+ * message words of all lanes are interleaved, word {@code i} of lane {@code l} is stored at
+ * {@code i * LANES + l}, so the dependency chains of the lanes overlap and the CPU can
+ * execute them in parallel without the Vector API. Instances hold scratch buffers and are
+ * not thread-safe.
+ */
+final class Interleaved {
+    static final int LANES = 4;
+
+    private static final VarHandle LITTLE_ENDIAN_INT =
+            MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    // Message word indexes of every round, the message permutation applied round by round.
+    private static final int[][] MSG_SCHEDULE = new int[7][16];
+
+    static {
+        for (int i = 0; i < 16; i++) {
+            MSG_SCHEDULE[0][i] = i;
+        }
+        for (int round = 1; round < 7; round++) {
+            for (int i = 0; i < 16; i++) {
+                MSG_SCHEDULE[round][i] = MSG_SCHEDULE[round - 1][MSG_PERMUTATION[i]];
+            }
+        }
+    }
+
+    private final int[] state = new int[16 * LANES];
+    private final int[] chainingValues = new int[8 * LANES];
+    private final int[][] chunkWords = newChunkWords();
+    private final long[] counters = new long[LANES];
+    private final int[] flags = new int[LANES];
+
+    private static void g(
+            final int[] state,
+            final int[] m,
+            final int a,
+            final int b,
+            final int c,
+            final int d,
+            final int mx,
+            final int my
+    ) {
+        for (int l = 0; l < LANES; l++) {
+            var state_a = state[a * LANES + l];
+            var state_b = state[b * LANES + l];
+            var state_c = state[c * LANES + l];
+            var state_d = state[d * LANES + l];
+
+            state_a = state_a + state_b + m[mx * LANES + l];
+            state_d = Integer.rotateRight(state_d ^ state_a, 16);
+            state_c = state_c + state_d;
+            state_b = Integer.rotateRight(state_b ^ state_c, 12);
+            state_a = state_a + state_b + m[my * LANES + l];
+            state_d = Integer.rotateRight(state_d ^ state_a, 8);
+            state_c = state_c + state_d;
+            state_b = Integer.rotateRight(state_b ^ state_c, 7);
+
+            state[a * LANES + l] = state_a;
+            state[b * LANES + l] = state_b;
+            state[c * LANES + l] = state_c;
+            state[d * LANES + l] = state_d;
+        }
+    }
+
+    /**
+     * Compress one block in every lane, replacing the chaining values with the first
+     * 8 words of the outputs. All lanes share the block length.
+     */
+    private static void compress(
+            final int[] state,
+            final int[] chainingValues,
+            final int[] blockWords,
+            final long[] counters,
+            final int blockLen,
+            final int[] flags
+    ) {
+        System.arraycopy(chainingValues, 0, state, 0, 8 * LANES);
+        for (int l = 0; l < LANES; l++) {
+            state[8 * LANES + l] = IV[0];
+            state[9 * LANES + l] = IV[1];
+            state[10 * LANES + l] = IV[2];
+            state[11 * LANES + l] = IV[3];
+            state[12 * LANES + l] = (int) counters[l];
+            state[13 * LANES + l] = (int) (counters[l] >> 32);
+            state[14 * LANES + l] = blockLen;
+            state[15 * LANES + l] = flags[l];
+        }
+
+        for (final var s : MSG_SCHEDULE) {
+            // Mix the columns.
+            g(state, blockWords, 0, 4, 8, 12, s[0], s[1]);
+            g(state, blockWords, 1, 5, 9, 13, s[2], s[3]);
+            g(state, blockWords, 2, 6, 10, 14, s[4], s[5]);
+            g(state, blockWords, 3, 7, 11, 15, s[6], s[7]);
+            // Mix the diagonals.
+            g(state, blockWords, 0, 5, 10, 15, s[8], s[9]);
+            g(state, blockWords, 1, 6, 11, 12, s[10], s[11]);
+            g(state, blockWords, 2, 7, 8, 13, s[12], s[13]);
+            g(state, blockWords, 3, 4, 9, 14, s[14], s[15]);
+        }
+
+        for (int i = 0; i < 8 * LANES; i++) {
+            chainingValues[i] = state[i] ^ state[i + 8 * LANES];
+        }
+    }
+
+    /**
+     * Load the message words of {@link #LANES} consecutive whole chunks in the interleaved
+     * layout, one array of {@code 16 * LANES} words per block of the chunks.
+     */
+    static void loadChunks(final byte[] input, final int offset, final int[][] chunkWords) {
+        for (int block = 0; block < CHUNK_LEN / BLOCK_LEN; block++) {
+            final var blockWords = chunkWords[block];
+            for (int l = 0; l < LANES; l++) {
+                final var blockOffset = offset + l * CHUNK_LEN + block * BLOCK_LEN;
+                for (int i = 0; i < 16; i++) {
+                    blockWords[i * LANES + l] = (int) LITTLE_ENDIAN_INT.get(input, blockOffset + i * 4);
+                }
+            }
+        }
+    }
+
+    /**
+     * Load the message words of {@link #LANES} consecutive whole chunks starting at the absolute
+     * offset of the buffer, like {@link #loadChunks(byte[], int, int[][])}. The buffer position
+     * is not changed.
+     */
+    static void loadChunks(final ByteBuffer input, final int offset, final int[][] chunkWords) {
+        final var swap = input.order() != ByteOrder.LITTLE_ENDIAN;
+        for (int block = 0; block < CHUNK_LEN / BLOCK_LEN; block++) {
+            final var blockWords = chunkWords[block];
+            for (int l = 0; l < LANES; l++) {
+                final var blockOffset = offset + l * CHUNK_LEN + block * BLOCK_LEN;
+                for (int i = 0; i < 16; i++) {
+                    final var word = input.getInt(blockOffset + i * 4);
+                    blockWords[i * LANES + l] = swap ? Integer.reverseBytes(word) : word;
+                }
+            }
+        }
+    }
+
+    static int[][] newChunkWords() {
+        return new int[CHUNK_LEN / BLOCK_LEN][16 * LANES];
+    }
+
+    /**
+     * Compute the chaining values of {@link #LANES} consecutive whole chunks, none of them the root.
+     */
+    int[][] chunkChainingValues(
+            final byte[] input,
+            final int offset,
+            final long chunkCounter,
+            final int[] keyWords,
+            final int flags
+    ) {
+        loadChunks(input, offset, chunkWords);
+        return chunkChainingValues(chunkWords, chunkCounter, keyWords, flags);
+    }
+
+    /**
+     * Compute the chaining values of {@link #LANES} consecutive whole chunks starting at the
+     * absolute offset of the buffer, none of them the root.
+     */
+    int[][] chunkChainingValues(
+            final ByteBuffer input,
+            final int offset,
+            final long chunkCounter,
+            final int[] keyWords,
+            final int flags
+    ) {
+        loadChunks(input, offset, chunkWords);
+        return chunkChainingValues(chunkWords, chunkCounter, keyWords, flags);
+    }
+
+    /**
+     * Compute the chaining values of {@link #LANES} consecutive whole chunks, none of them
+     * the root, from message words loaded by {@link #loadChunks}. The same words can be
+     * compressed with different key words and flags.
+     */
+    int[][] chunkChainingValues(
+            final int[][] chunkWords,
+            final long chunkCounter,
+            final int[] keyWords,
+            final int flags
+    ) {
+        for (int l = 0; l < LANES; l++) {
+            for (int i = 0; i < 8; i++) {
+                chainingValues[i * LANES + l] = keyWords[i];
+            }
+            counters[l] = chunkCounter + l;
+        }
+
+        final var blocks = CHUNK_LEN / BLOCK_LEN;
+        for (int block = 0; block < blocks; block++) {
+            var blockFlags = flags;
+            if (block == 0) {
+                blockFlags |= CHUNK_START;
+            }
+            if (block == blocks - 1) {
+                blockFlags |= CHUNK_END;
+            }
+            Arrays.fill(this.flags, blockFlags);
+
+            compress(state, chainingValues, chunkWords[block], counters, BLOCK_LEN, this.flags);
+        }
+
+        final var result = new int[LANES][8];
+        for (int l = 0; l < LANES; l++) {
+            for (int i = 0; i < 8; i++) {
+                result[l][i] = chainingValues[i * LANES + l];
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cz.aprar.oss.blake3;
+
+import static cz.aprar.oss.blake3.Blake3.*;
+
+/**
+ * Keyed 64-bit hash for hash tables with attacker-controlled keys, a drop-in replacement
+ * for SipHash-style functions. The result equals the first 8 bytes (little-endian) of the
+ * keyed hash {@code new Hasher(key)}. Inputs of up to one chunk (1024 bytes) are compressed
+ * block by block straight from pre-expanded key words, with the whole state in local variables
+ * and without any allocation. Longer inputs fall back to a regular {@link Hasher}, which
+ * allocates. Instances are immutable and thread-safe.
+ */
+public final class KeyedHash64 {
+    private final int[] keyWords;
+    private final int k0, k1, k2, k3, k4, k5, k6, k7;
+
+    /**
+     * Construct a hash function with the given key.
+     * @param key 32 bytes hash key
+     */
+    public KeyedHash64(final byte[] key) {
+        if (key.length != KEY_LEN) {
+            throw new IllegalArgumentException("Key must be " + KEY_LEN + " bytes long: " + key.length);
+        }
+        this.keyWords = wordsFromLittleEndianBytes(key);
+        this.k0 = keyWords[0];
+        this.k1 = keyWords[1];
+        this.k2 = keyWords[2];
+        this.k3 = keyWords[3];
+        this.k4 = keyWords[4];
+        this.k5 = keyWords[5];
+        this.k6 = keyWords[6];
+        this.k7 = keyWords[7];
+    }
+
+    /**
+     * Hash the whole array.
+     * @param input Hash input
+     * @return 64-bit hash
+     */
+    public long hash(final byte[] input) {
+        return hash(input, 0, input.length);
+    }
+
+    /**
+     * Hash a part of the array.
+     * @param input Hash input
+     * @param offset Offset of the first byte to hash
+     * @param len Number of bytes to hash
+     * @return 64-bit hash
+     */
+    public long hash(final byte[] input, final int offset, final int len) {
+        if (offset < 0 || len < 0 || offset > input.length - len) {
+            throw new IndexOutOfBoundsException("Range [" + offset + ", " + offset + " + " + len + ") out of bounds for length " + input.length);
+        }
+        if (len > CHUNK_LEN) {
+            final var hasher = new Hasher(keyWords, KEYED_HASH);
+            hasher.update(input, offset, len);
+            final var out = new byte[8];
+            hasher.finalizeHash(out, 0, out.length);
+            return littleEndianLong(out);
+        }
+
+        final var end = offset + len;
+        return compress(
+                word(input, offset, end), word(input, offset + 4, end),
+                word(input, offset + 8, end), word(input, offset + 12, end),
+                word(input, offset + 16, end), word(input, offset + 20, end),
+                word(input, offset + 24, end), word(input, offset + 28, end),
+                word(input, offset + 32, end), word(input, offset + 36, end),
+                word(input, offset + 40, end), word(input, offset + 44, end),
+                word(input, offset + 48, end), word(input, offset + 52, end),
+                word(input, offset + 56, end), word(input, offset + 60, end),
+                input, offset, len
+        );
+    }
+
+    /**
+     * Hash the 4 little-endian bytes of the value.
+     * @param value Hash input
+     * @return 64-bit hash
+     */
+    public long hash(final int value) {
+        return compress(value, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, null, 0, 4);
+    }
+
+    /**
+     * Hash the 8 little-endian bytes of the value.
+     * @param value Hash input
+     * @return 64-bit hash
+     */
+    public long hash(final long value) {
+        return compress((int) value, (int) (value >>> 32), 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, null, 0, 8);
+    }
+
+    /**
+     * Hash the 16 little-endian bytes of both values, the first one first.
+     * @param first First hash input
+     * @param second Second hash input
+     * @return 64-bit hash
+     */
+    public long hash(final long first, final long second) {
+        return compress(
+                (int) first, (int) (first >>> 32), (int) second, (int) (second >>> 32),
+                0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+                null, 0, 16
+        );
+    }
+
+    // Little-endian word at the offset, zero padded past the end of the input.
+    private static int word(final byte[] input, final int offset, final int end) {
+        final var available = end - offset;
+        if (available >= 4) {
+            return (input[offset] & 0xFF) |
+                    ((input[offset + 1] & 0xFF) << 8) |
+                    ((input[offset + 2] & 0xFF) << 16) |
+                    ((input[offset + 3] & 0xFF) << 24);
+        }
+        var word = 0;
+        for (int i = 0; i < available; i++) {
+            word |= (input[offset + i] & 0xFF) << (i * 8);
+        }
+        return word;
+    }
+
+    private static long littleEndianLong(final byte[] bytes) {
+        var value = 0L;
+        for (int i = 7; i >= 0; i--) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+
+    // Blake3.compress of the blocks of a single root chunk with the chaining value, state and
+    // message words held in local variables instead of arrays, returning only the first 8
+    // output bytes. The words of the first block are given, the following blocks are loaded
+    // from the input, which is only read when it is longer than one block.
+    private long compress(
+            int m0, int m1, int m2, int m3, int m4, int m5, int m6, int m7,
+            int m8, int m9, int m10, int m11, int m12, int m13, int m14, int m15,
+            final byte[] input, final int offset, final int len
+    ) {
+        int c0 = k0, c1 = k1, c2 = k2, c3 = k3, c4 = k4, c5 = k5, c6 = k6, c7 = k7;
+        final var end = offset + len;
+        var blockOffset = offset;
+        while (true) {
+            final var last = end - blockOffset <= BLOCK_LEN;
+            var flags = KEYED_HASH;
+            if (blockOffset == offset) {
+                flags |= CHUNK_START;
+            }
+            if (last) {
+                flags |= CHUNK_END | ROOT;
+            }
+
+            int s0 = c0, s1 = c1, s2 = c2, s3 = c3, s4 = c4, s5 = c5, s6 = c6, s7 = c7;
+            int s8 = IV[0], s9 = IV[1], s10 = IV[2], s11 = IV[3];
+            int s12 = 0, s13 = 0, s14 = Math.min(end - blockOffset, BLOCK_LEN), s15 = flags;
+
+            for (int round = 0; round < 7; round++) {
+                // Mix the columns.
+                s0 += s4 + m0; s12 = Integer.rotateRight(s12 ^ s0, 16);
+                s8 += s12; s4 = Integer.rotateRight(s4 ^ s8, 12);
+                s0 += s4 + m1; s12 = Integer.rotateRight(s12 ^ s0, 8);
+                s8 += s12; s4 = Integer.rotateRight(s4 ^ s8, 7);
+                s1 += s5 + m2; s13 = Integer.rotateRight(s13 ^ s1, 16);
+                s9 += s13; s5 = Integer.rotateRight(s5 ^ s9, 12);
+                s1 += s5 + m3; s13 = Integer.rotateRight(s13 ^ s1, 8);
+                s9 += s13; s5 = Integer.rotateRight(s5 ^ s9, 7);
+                s2 += s6 + m4; s14 = Integer.rotateRight(s14 ^ s2, 16);
+                s10 += s14; s6 = Integer.rotateRight(s6 ^ s10, 12);
+                s2 += s6 + m5; s14 = Integer.rotateRight(s14 ^ s2, 8);
+                s10 += s14; s6 = Integer.rotateRight(s6 ^ s10, 7);
+                s3 += s7 + m6; s15 = Integer.rotateRight(s15 ^ s3, 16);
+                s11 += s15; s7 = Integer.rotateRight(s7 ^ s11, 12);
+                s3 += s7 + m7; s15 = Integer.rotateRight(s15 ^ s3, 8);
+                s11 += s15; s7 = Integer.rotateRight(s7 ^ s11, 7);
+                // Mix the diagonals.
+                s0 += s5 + m8; s15 = Integer.rotateRight(s15 ^ s0, 16);
+                s10 += s15; s5 = Integer.rotateRight(s5 ^ s10, 12);
+                s0 += s5 + m9; s15 = Integer.rotateRight(s15 ^ s0, 8);
+                s10 += s15; s5 = Integer.rotateRight(s5 ^ s10, 7);
+                s1 += s6 + m10; s12 = Integer.rotateRight(s12 ^ s1, 16);
+                s11 += s12; s6 = Integer.rotateRight(s6 ^ s11, 12);
+                s1 += s6 + m11; s12 = Integer.rotateRight(s12 ^ s1, 8);
+                s11 += s12; s6 = Integer.rotateRight(s6 ^ s11, 7);
+                s2 += s7 + m12; s13 = Integer.rotateRight(s13 ^ s2, 16);
+                s8 += s13; s7 = Integer.rotateRight(s7 ^ s8, 12);
+                s2 += s7 + m13; s13 = Integer.rotateRight(s13 ^ s2, 8);
+                s8 += s13; s7 = Integer.rotateRight(s7 ^ s8, 7);
+                s3 += s4 + m14; s14 = Integer.rotateRight(s14 ^ s3, 16);
+                s9 += s14; s4 = Integer.rotateRight(s4 ^ s9, 12);
+                s3 += s4 + m15; s14 = Integer.rotateRight(s14 ^ s3, 8);
+                s9 += s14; s4 = Integer.rotateRight(s4 ^ s9, 7);
+                // Permute the message words.
+                final int t0 = m2, t1 = m6, t2 = m3, t3 = m10, t4 = m7, t5 = m0, t6 = m4, t7 = m13;
+                final int t8 = m1, t9 = m11, t10 = m12, t11 = m5, t12 = m9, t13 = m14, t14 = m15, t15 = m8;
+                m0 = t0; m1 = t1; m2 = t2; m3 = t3; m4 = t4; m5 = t5; m6 = t6; m7 = t7;
+                m8 = t8; m9 = t9; m10 = t10; m11 = t11; m12 = t12; m13 = t13; m14 = t14; m15 = t15;
+            }
+
+            if (last) {
+                return ((s0 ^ s8) & 0xFFFFFFFFL) | ((long) (s1 ^ s9) << 32);
+            }
+            c0 = s0 ^ s8; c1 = s1 ^ s9; c2 = s2 ^ s10; c3 = s3 ^ s11;
+            c4 = s4 ^ s12; c5 = s5 ^ s13; c6 = s6 ^ s14; c7 = s7 ^ s15;
+
+            blockOffset += BLOCK_LEN;
+            m0 = word(input, blockOffset, end); m1 = word(input, blockOffset + 4, end);
+            m2 = word(input, blockOffset + 8, end); m3 = word(input, blockOffset + 12, end);
+            m4 = word(input, blockOffset + 16, end); m5 = word(input, blockOffset + 20, end);
+            m6 = word(input, blockOffset + 24, end); m7 = word(input, blockOffset + 28, end);
+            m8 = word(input, blockOffset + 32, end); m9 = word(input, blockOffset + 36, end);
+            m10 = word(input, blockOffset + 40, end); m11 = word(input, blockOffset + 44, end);
+            m12 = word(input, blockOffset + 48, end); m13 = word(input, blockOffset + 52, end);
+            m14 = word(input, blockOffset + 56, end); m15 = word(input, blockOffset + 60, end);
+        }
+    }
+}
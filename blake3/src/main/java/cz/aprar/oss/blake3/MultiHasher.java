@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cz.aprar.oss.blake3;
+
+import static cz.aprar.oss.blake3.Blake3.*;
+import static cz.aprar.oss.blake3.Interleaved.LANES;
+
+/**
+ * Hashes the same input in several modes at once, e.g. a regular hash, a keyed hash and
+ * a derived key. Whole chunks are loaded into message words only once, in runs of
+ * {@link Interleaved#LANES} chunks, and every mode compresses the loaded words with its own
+ * key words and flags in the lanes of the {@link Interleaved} engine. Each mode keeps its own
+ * {@link Hasher} for the tree and the bytes of the current chunk.
+ */
+public class MultiHasher {
+    private final Hasher[] hashers;
+    private final Interleaved interleaved;
+    private final int[][] chunkWords;
+    private long length;
+
+    /**
+     * Construct a multi-mode hasher.
+     * @param hashers Hashers without any input, define the hash modes
+     */
+    public MultiHasher(final Hasher... hashers) {
+        if (hashers.length == 0) {
+            throw new IllegalArgumentException("At least one hash mode is required");
+        }
+        this.hashers = new Hasher[hashers.length];
+        for (int mode = 0; mode < hashers.length; mode++) {
+            if (!hashers[mode].isEmpty()) {
+                throw new IllegalArgumentException("Hasher must not contain any input");
+            }
+            this.hashers[mode] = hashers[mode].clone();
+        }
+        this.interleaved = new Interleaved();
+        this.chunkWords = Interleaved.newChunkWords();
+        this.length = 0;
+    }
+
+    /**
+     * Add input to the hash state of all modes. This can be called any number of times.
+     * @param input Hash input
+     */
+    public void update(final byte[] input) {
+        update(input, 0, input.length);
+    }
+
+    /**
+     * Add a part of the input array to the hash state of all modes.
+     * @param input Hash input
+     * @param offset Offset of the first byte to hash
+     * @param len Number of bytes to hash
+     */
+    public void update(final byte[] input, final int offset, final int len) {
+        var counter = 0;
+        while (counter < len) {
+            // Same condition as Hasher.update, the last chunk has to stay in the chunk states.
+            if (length % CHUNK_LEN == 0 && len - counter > LANES * CHUNK_LEN) {
+                Interleaved.loadChunks(input, offset + counter, chunkWords);
+                final var chunkCounter = length / CHUNK_LEN;
+                for (var hasher : hashers) {
+                    final var chunkCvs = interleaved.chunkChainingValues(
+                            chunkWords, chunkCounter, hasher.keyWords(), hasher.flags()
+                    );
+                    for (var chunkCv : chunkCvs) {
+                        hasher.addSubtreeChainingValue(chunkCv, 1);
+                    }
+                }
+                counter += LANES * CHUNK_LEN;
+                length += LANES * CHUNK_LEN;
+                continue;
+            }
+
+            // Add the rest of the current chunk to every mode.
+            final var take = (int) Math.min(CHUNK_LEN - length % CHUNK_LEN, len - counter);
+            for (var hasher : hashers) {
+                hasher.update(input, offset + counter, take);
+            }
+            counter += take;
+            length += take;
+        }
+    }
+
+    /**
+     * Finalize the hash of one mode and write any number of output bytes.
+     * @param mode Index of the mode, the position of its hasher in the constructor
+     * @param size Hash size
+     * @return Hash data
+     */
+    public byte[] finalizeHash(final int mode, final int size) {
+        if (mode < 0 || mode >= hashers.length) {
+            throw new IndexOutOfBoundsException("Mode " + mode + " out of " + hashers.length);
+        }
+        return hashers[mode].finalizeHash(size);
+    }
+
+    /**
+     * Finalize the hash of one mode and write 32 output bytes.
+     * @param mode Index of the mode, the position of its hasher in the constructor
+     * @return Hash data
+     */
+    public byte[] finalizeHash(final int mode) {
+        return finalizeHash(mode, OUT_LEN);
+    }
+}
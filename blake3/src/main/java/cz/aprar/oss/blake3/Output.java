@@ -58,29 +58,24 @@ class Output {
 
     byte[] rootOutputBytes(final int size) {
         final var outSlice = new byte[size];
+        rootOutputBytes(outSlice, 0, size);
+        return outSlice;
+    }
+
+    void rootOutputBytes(final byte[] out, final int offset, final int len) {
         final var chunkSize = 2 * OUT_LEN;
-        for (int outputBlockCounter = 0; outputBlockCounter * chunkSize < outSlice.length; outputBlockCounter++) {
+        var outputBlockCounter = 0L;
+        var position = 0;
+        while (position < len) {
             final var words = compress(inputChainingValue, blockWords, outputBlockCounter, blockLen, flags | ROOT);
 
             // The output length might not be a multiple of 4.
-            final var sliceStart = outputBlockCounter * chunkSize;
-            for (int i = 0; i < Math.min(outSlice.length - sliceStart + 3, chunkSize) / 4; i++) {
-                var w = 0L;
-                if (i < words.length) {
-                    w = words[i];
-                }
-                outSlice[sliceStart + i * 4] = (byte) w;
-                if (sliceStart + i * 4 + 1 < outSlice.length) {
-                    outSlice[sliceStart + i * 4 + 1] = (byte) (w >> 8);
-                }
-                if (sliceStart + i * 4 + 2 < outSlice.length) {
-                    outSlice[sliceStart + i * 4 + 2] = (byte) (w >> 16);
-                }
-                if (sliceStart + i * 4 + 3 < outSlice.length) {
-                    outSlice[sliceStart + i * 4 + 3] = (byte) (w >> 24);
-                }
+            final var take = Math.min(chunkSize, len - position);
+            for (int i = 0; i < take; i++) {
+                out[offset + position + i] = (byte) (words[i >>> 2] >>> ((i & 3) * 8));
             }
+            position += take;
+            outputBlockCounter++;
         }
-        return outSlice;
     }
 }
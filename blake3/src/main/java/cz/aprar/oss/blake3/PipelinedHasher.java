@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cz.aprar.oss.blake3;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static cz.aprar.oss.blake3.Blake3.*;
+
+/**
+ * Multi-threaded hasher for sequential input. The input is batched into groups of a power
+ * of two chunks, each group is hashed into a subtree chaining value by the executor while
+ * the producer keeps adding input, and the chaining values are merged in order into the
+ * wrapped {@link Hasher}. At most {@code maxInFlight} groups are buffered at once. The result
+ * is identical to {@link Hasher#update(byte[])} with the same input.
+ * <p>
+ * Instances are not thread-safe, only a single producer may add input.
+ */
+public class PipelinedHasher {
+    private static final int DEFAULT_GROUP_CHUNKS = 64;
+
+    private final Hasher hasher;
+    private final Executor executor;
+    private final int groupChunks;
+    private final int groupLen;
+    private final int maxInFlight;
+    private final ArrayDeque<PendingGroup> pending;
+    private final ArrayDeque<byte[]> freeBuffers;
+    private byte[] buffer;
+    private int bufferLen;
+    private long dispatchedChunks;
+
+    /**
+     * Construct a pipelined hasher with 64 KiB groups and two groups in flight per processor.
+     * @param hasher Hasher without any input, defines the hash mode
+     * @param executor Executor hashing the groups
+     */
+    public PipelinedHasher(final Hasher hasher, final Executor executor) {
+        this(hasher, executor, DEFAULT_GROUP_CHUNKS, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Construct a pipelined hasher.
+     * @param hasher Hasher without any input, defines the hash mode
+     * @param executor Executor hashing the groups
+     * @param groupChunks Number of chunks per group, a power of two
+     * @param maxInFlight Maximum number of groups dispatched and not merged yet
+     */
+    public PipelinedHasher(final Hasher hasher, final Executor executor, final int groupChunks, final int maxInFlight) {
+        if (!hasher.isEmpty()) {
+            throw new IllegalArgumentException("Hasher must not contain any input");
+        }
+        if (groupChunks <= 0 || Integer.bitCount(groupChunks) != 1 || groupChunks > Integer.MAX_VALUE / CHUNK_LEN) {
+            throw new IllegalArgumentException("Group chunks must be a power of two: " + groupChunks);
+        }
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("Maximum groups in flight must be positive: " + maxInFlight);
+        }
+        this.hasher = hasher;
+        this.executor = executor;
+        this.groupChunks = groupChunks;
+        this.groupLen = groupChunks * CHUNK_LEN;
+        this.maxInFlight = maxInFlight;
+        this.pending = new ArrayDeque<>(maxInFlight);
+        this.freeBuffers = new ArrayDeque<>(maxInFlight);
+        this.buffer = new byte[groupLen];
+        this.bufferLen = 0;
+        this.dispatchedChunks = 0;
+    }
+
+    /**
+     * Add input to the hash state. This can be called any number of times.
+     * @param input Hash input
+     */
+    public void update(final byte[] input) {
+        update(input, 0, input.length);
+    }
+
+    /**
+     * Add a part of the input array to the hash state.
+     * @param input Hash input
+     * @param offset Offset of the first byte to hash
+     * @param len Number of bytes to hash
+     */
+    public void update(final byte[] input, final int offset, final int len) {
+        var counter = 0;
+        while (counter < len) {
+            // The full group is not the last one, more input is coming.
+            if (bufferLen == groupLen) {
+                dispatch(nextBuffer());
+            }
+
+            final var take = Math.min(groupLen - bufferLen, len - counter);
+            System.arraycopy(input, offset + counter, buffer, bufferLen, take);
+            bufferLen += take;
+            counter += take;
+        }
+    }
+
+    /**
+     * Add all remaining bytes of the buffer to the hash state. The buffer position is
+     * advanced to its limit.
+     * @param input Hash input
+     */
+    public void update(final ByteBuffer input) {
+        while (input.hasRemaining()) {
+            if (bufferLen == groupLen) {
+                dispatch(nextBuffer());
+            }
+
+            final var take = Math.min(groupLen - bufferLen, input.remaining());
+            input.get(buffer, bufferLen, take);
+            bufferLen += take;
+        }
+    }
+
+    /**
+     * Add all bytes of the stream to the hash state, reading directly into the group buffers.
+     * The stream is not closed.
+     * @param input Hash input
+     * @throws IOException if reading the stream fails
+     */
+    public void update(final InputStream input) throws IOException {
+        while (true) {
+            if (bufferLen < groupLen) {
+                final var read = input.read(buffer, bufferLen, groupLen - bufferLen);
+                if (read < 0) {
+                    return;
+                }
+                bufferLen += read;
+            } else {
+                // Dispatch the full group only once more input is known to follow.
+                final var next = nextBuffer();
+                final var read = input.read(next, 0, groupLen);
+                if (read < 0) {
+                    freeBuffers.add(next);
+                    return;
+                }
+                dispatch(next);
+                bufferLen = read;
+            }
+        }
+    }
+
+    /**
+     * Finalize the hash and write any number of output bytes. More input can be added afterwards.
+     * @param size Hash size
+     * @return Hash data
+     */
+    public byte[] finalizeHash(final int size) {
+        while (!pending.isEmpty()) {
+            mergeOldest();
+        }
+        final var tail = hasher.clone();
+        tail.update(buffer, 0, bufferLen);
+        return tail.finalizeHash(size);
+    }
+
+    /**
+     * Finalize the hash and write 32 output bytes.
+     * @return Hash data
+     */
+    public byte[] finalizeHash() {
+        return finalizeHash(OUT_LEN);
+    }
+
+    private byte[] nextBuffer() {
+        final var free = freeBuffers.poll();
+        return free != null ? free : new byte[groupLen];
+    }
+
+    private void dispatch(final byte[] next) {
+        // Recycle buffers of already hashed groups, wait for the oldest one
+        // when too many groups are in flight.
+        while (!pending.isEmpty() && pending.peek().chainingValue().isDone()) {
+            mergeOldest();
+        }
+        if (pending.size() >= maxInFlight) {
+            mergeOldest();
+        }
+
+        final var group = buffer;
+        final var chunkCounter = dispatchedChunks;
+        final var keyWords = hasher.keyWords();
+        final var flags = hasher.flags();
+        final var chainingValue = CompletableFuture.supplyAsync(
+                () -> Hasher.subtreeChainingValue(group, 0, groupChunks, chunkCounter, keyWords, flags),
+                executor
+        );
+        pending.add(new PendingGroup(group, chainingValue));
+        dispatchedChunks += groupChunks;
+        buffer = next;
+        bufferLen = 0;
+    }
+
+    private void mergeOldest() {
+        final var group = pending.remove();
+        hasher.addSubtreeChainingValue(group.chainingValue().join(), groupChunks);
+        freeBuffers.add(group.buffer());
+    }
+
+    private record PendingGroup(byte[] buffer, CompletableFuture<int[]> chainingValue) { }
+}
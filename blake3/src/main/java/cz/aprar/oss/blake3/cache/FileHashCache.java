@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cz.aprar.oss.blake3.cache;
+
+import cz.aprar.oss.blake3.Hasher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * File content hash cache. Hashes are keyed by absolute path and validated against
+ * the file size, modification time and file key (inode) on every lookup, so only
+ * changed files are hashed again. The least recently used entries are evicted when
+ * the cache grows over its size limit. Safe for concurrent use from many threads.
+ */
+public class FileHashCache {
+    private static final int MAGIC = 0x42334843; // "B3HC"
+    private static final byte VERSION = 1;
+    private static final int HASH_LEN = 32;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    // Files modified this recently may still change within the timestamp granularity.
+    private static final long RACY_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private final Map<String, Entry> entries;
+
+    /**
+     * Construct an empty cache.
+     * @param maxEntries Maximum number of cached files
+     */
+    public FileHashCache(final int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Maximum number of entries must be positive: " + maxEntries);
+        }
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    /**
+     * Load a cache persisted by {@link #save(Path)}. A missing file or a file written
+     * by a different format version results in an empty cache.
+     * @param cacheFile Cache file
+     * @param maxEntries Maximum number of cached files
+     * @return Loaded cache
+     * @throws IOException if the cache file cannot be read
+     */
+    public static FileHashCache load(final Path cacheFile, final int maxEntries) throws IOException {
+        final var cache = new FileHashCache(maxEntries);
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                return cache;
+            }
+            final var count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final var path = in.readUTF();
+                final var metadata = new Metadata(in.readLong(), in.readLong(), in.readUTF());
+                final var hash = new byte[HASH_LEN];
+                in.readFully(hash);
+                cache.entries.put(path, new Entry(metadata, hash));
+            }
+        } catch (NoSuchFileException e) {
+            return cache;
+        }
+        return cache;
+    }
+
+    /**
+     * Persist the cache, replacing the cache file atomically where the file system allows it.
+     * @param cacheFile Cache file
+     * @throws IOException if the cache file cannot be written
+     */
+    public void save(final Path cacheFile) throws IOException {
+        // Snapshot in access order, so loading restores the eviction order.
+        final ArrayList<Map.Entry<String, Entry>> snapshot;
+        synchronized (entries) {
+            snapshot = new ArrayList<>(entries.size());
+            for (final var entry : entries.entrySet()) {
+                snapshot.add(Map.entry(entry.getKey(), entry.getValue()));
+            }
+        }
+
+        final var absolute = cacheFile.toAbsolutePath();
+        final var tmpFile = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                out.writeInt(snapshot.size());
+                for (final var entry : snapshot) {
+                    final var metadata = entry.getValue().metadata();
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(metadata.size());
+                    out.writeLong(metadata.modified());
+                    out.writeUTF(metadata.fileKey());
+                    out.write(entry.getValue().hash());
+                }
+            }
+            try {
+                Files.move(tmpFile, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpFile, absolute, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    /**
+     * Return the hash of the file content, hashing the file only when it is not cached
+     * or its metadata changed since it was cached.
+     * @param file File to hash
+     * @return 32 bytes hash
+     * @throws IOException if the file cannot be read
+     */
+    public byte[] hash(final Path file) throws IOException {
+        final var key = key(file);
+        final var metadata = Metadata.of(file);
+
+        final var cached = entries.get(key);
+        if (cached != null && cached.metadata().equals(metadata)) {
+            return cached.hash().clone();
+        }
+
+        final var hashStart = System.currentTimeMillis();
+        final var hash = hashFile(file);
+
+        // Cache only hashes of files that did not change while being hashed
+        // and cannot change unnoticed within the timestamp granularity.
+        if (metadata.equals(Metadata.of(file))
+                && metadata.modified() < TimeUnit.MILLISECONDS.toNanos(hashStart) - RACY_INTERVAL_NANOS) {
+            entries.put(key, new Entry(metadata, hash));
+        }
+        return hash.clone();
+    }
+
+    /**
+     * Remove the file from the cache.
+     * @param file Cached file
+     */
+    public void invalidate(final Path file) {
+        entries.remove(key(file));
+    }
+
+    /**
+     * @return Number of cached files
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private static String key(final Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    private static byte[] hashFile(final Path file) throws IOException {
+        final var hasher = new Hasher();
+        final var buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                hasher.update(buffer);
+                buffer.clear();
+            }
+        }
+        return hasher.finalizeHash(HASH_LEN);
+    }
+
+    private record Metadata(long size, long modified, String fileKey) {
+        static Metadata of(final Path file) throws IOException {
+            final var attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return new Metadata(
+                    attributes.size(),
+                    attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                    Objects.toString(attributes.fileKey(), "")
+            );
+        }
+    }
+
+    private record Entry(Metadata metadata, byte[] hash) { }
+}
@@ -26,8 +26,32 @@ import java.security.Provider;
 public class Blake3Provider extends Provider {
     public Blake3Provider() {
         super("Blake3Provider", "1.0",
-                "Provider with Blake3 hash function");
+                "Provider with Blake3 hash function and random number generator");
         put("MessageDigest.Blake3", "cz.aprar.oss.blake3.jca.Blake3Service");
         put("MessageDigest.Blake3ExtendedHashSize", "cz.aprar.oss.blake3.jca.Blake3ExtendedService");
+        put("Alg.Alias.MessageDigest.Blake3-256", "Blake3");
+        putService(new SizedDigestService(this, "Blake3-224", 28));
+        putService(new SizedDigestService(this, "Blake3-384", 48));
+        putService(new SizedDigestService(this, "Blake3-512", 64));
+        putService(new SizedDigestService(this, "Blake3-1024", 128));
+        put("SecureRandom.Blake3", "cz.aprar.oss.blake3.jca.Blake3SecureRandomSpi");
+        put("SecureRandom.Blake3 ThreadSafe", "true");
+    }
+
+    /**
+     * Message digest service with a custom hash size, instantiated without reflection
+     */
+    private static final class SizedDigestService extends Service {
+        private final int hashSize;
+
+        SizedDigestService(final Provider provider, final String algorithm, final int hashSize) {
+            super(provider, "MessageDigest", algorithm, Blake3Spi.class.getName(), null, null);
+            this.hashSize = hashSize;
+        }
+
+        @Override
+        public Object newInstance(final Object constructorParameter) {
+            return new Blake3Spi(hashSize) { };
+        }
     }
 }
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cz.aprar.oss.blake3.jca;
+
+import cz.aprar.oss.blake3.Hasher;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serial;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.SecureRandomSpi;
+import java.util.Arrays;
+
+/**
+ * Blake3 based random number generator. Keys are seeded from the operating system entropy
+ * source using the key derivation mode, output is generated by the extended output function
+ * of the keyed hash in blocks of 1 KiB. Each block starts with the key of the next block,
+ * which replaces the current key right away, so compromise of the state does not reveal
+ * earlier output. Every thread uses its own generator seeded from a shared one, so callers
+ * are not serialized on a single lock.
+ * <p>
+ * Seeds passed to {@code setSeed} supplement the state of the shared generator and the
+ * generator of the calling thread, they never replace the entropy gathered so far.
+ * <p>
+ * The generator state is not serialized, a deserialized instance is seeded again from the
+ * operating system entropy source.
+ */
+public class Blake3SecureRandomSpi extends SecureRandomSpi {
+    private static final String SEED_CONTEXT = "cz.aprar.oss.blake3 2026-10-19 SecureRandom seed";
+    private static final String[] ENTROPY_ALGORITHMS = {"NativePRNGNonBlocking", "Windows-PRNG", "DRBG"};
+    private static final int KEY_LEN = 32;
+    private static final int SEED_LEN = 64;
+    private static final int OUTPUT_BLOCK_LEN = 1024;
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private transient Generator shared;
+    private transient ThreadLocal<Generator> generators;
+
+    public Blake3SecureRandomSpi() {
+        seed();
+    }
+
+    private void seed() {
+        final var shared = new Generator(deriveKey(new byte[0], EntropySource.INSTANCE.generateSeed(SEED_LEN)));
+        this.shared = shared;
+        this.generators = ThreadLocal.withInitial(() -> new Generator(shared.nextKey()));
+    }
+
+    @Serial
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        seed();
+    }
+
+    @Override
+    protected void engineSetSeed(final byte[] seed) {
+        shared.reseed(seed);
+        generators.get().reseed(seed);
+    }
+
+    @Override
+    protected void engineNextBytes(final byte[] bytes) {
+        generators.get().nextBytes(bytes);
+    }
+
+    @Override
+    protected byte[] engineGenerateSeed(final int numBytes) {
+        return EntropySource.INSTANCE.generateSeed(numBytes);
+    }
+
+    private static byte[] deriveKey(final byte[] key, final byte[] seed) {
+        final var hasher = new Hasher(SEED_CONTEXT);
+        hasher.update(key);
+        hasher.update(seed);
+        return hasher.finalizeHash(KEY_LEN);
+    }
+
+    /**
+     * Fast key erasure generator, not thread-safe unless noted.
+     */
+    private static final class Generator {
+        private byte[] key;
+        private final byte[] block;
+        private int position;
+
+        Generator(final byte[] key) {
+            this.key = key;
+            this.block = new byte[OUTPUT_BLOCK_LEN];
+            this.position = OUTPUT_BLOCK_LEN;
+        }
+
+        private void refill() {
+            new Hasher(key).finalizeHash(block, 0, OUTPUT_BLOCK_LEN);
+            System.arraycopy(block, 0, key, 0, KEY_LEN);
+            Arrays.fill(block, 0, KEY_LEN, (byte) 0);
+            position = KEY_LEN;
+        }
+
+        void nextBytes(final byte[] bytes) {
+            var counter = 0;
+            while (counter < bytes.length) {
+                if (position == OUTPUT_BLOCK_LEN) {
+                    refill();
+                }
+                final var take = Math.min(OUTPUT_BLOCK_LEN - position, bytes.length - counter);
+                System.arraycopy(block, position, bytes, counter, take);
+                // Returned output must not stay in memory.
+                Arrays.fill(block, position, position + take, (byte) 0);
+                position += take;
+                counter += take;
+            }
+        }
+
+        void reseed(final byte[] seed) {
+            synchronized (this) {
+                final var oldKey = key;
+                key = deriveKey(oldKey, seed);
+                Arrays.fill(oldKey, (byte) 0);
+                // Drop the output generated with the old key.
+                Arrays.fill(block, (byte) 0);
+                position = OUTPUT_BLOCK_LEN;
+            }
+        }
+
+        // Thread-safe, used to seed the generators of other threads.
+        byte[] nextKey() {
+            final var nextKey = new byte[KEY_LEN];
+            synchronized (this) {
+                nextBytes(nextKey);
+            }
+            return nextKey;
+        }
+    }
+
+    /**
+     * Operating system entropy source. The JDK default is not used, it could resolve back to this provider.
+     */
+    private static final class EntropySource {
+        static final SecureRandom INSTANCE = open();
+
+        private static SecureRandom open() {
+            for (final var algorithm : ENTROPY_ALGORITHMS) {
+                try {
+                    return SecureRandom.getInstance(algorithm);
+                } catch (NoSuchAlgorithmException e) {
+                    // try the next one
+                }
+            }
+            throw new IllegalStateException("No operating system entropy source available");
+        }
+    }
+}
@@ -20,14 +20,14 @@ package cz.aprar.oss.blake3.jca;
 
 import cz.aprar.oss.blake3.Hasher;
 
+import java.nio.ByteBuffer;
+import java.security.DigestException;
 import java.security.MessageDigestSpi;
 
 /**
  * Blake3 Service Provider Interface
  */
-abstract class Blake3Spi extends MessageDigestSpi {
-    private static final int MAX_CHUNK_LENGTH = 1024 * 1024;
-
+abstract class Blake3Spi extends MessageDigestSpi implements Cloneable {
     private Hasher hasher = new Hasher();
     private final int hashSize;
 
@@ -35,36 +35,55 @@ abstract class Blake3Spi extends MessageDigestSpi {
         this.hashSize = hashSize;
     }
 
+    @Override
+    protected int engineGetDigestLength() {
+        return hashSize;
+    }
+
     @Override
     protected void engineUpdate(final byte input) {
-        hasher.update(new byte[] {input});
+        hasher.update(input);
     }
 
     @Override
     protected void engineUpdate(final byte[] input, final int offset, final int len) {
-        var movingOffset = offset;
-
-        while (movingOffset < offset + len) {
-            var movingLength = offset + len - movingOffset;
-            // limit chunk length
-            if (movingLength > MAX_CHUNK_LENGTH) {
-                movingLength = MAX_CHUNK_LENGTH;
-            }
+        hasher.update(input, offset, len);
+    }
 
-            var buffer = new byte[movingLength];
-            System.arraycopy(input, movingOffset, buffer, 0, movingLength);
-            hasher.update(buffer);
-            movingOffset += movingLength;
-        }
+    @Override
+    protected void engineUpdate(final ByteBuffer input) {
+        hasher.update(input);
     }
 
     @Override
     protected byte[] engineDigest() {
-        return hasher.finalizeHash(hashSize);
+        final var hash = hasher.finalizeHash(hashSize);
+        hasher.reset();
+        return hash;
+    }
+
+    @Override
+    protected int engineDigest(final byte[] buf, final int offset, final int len) throws DigestException {
+        if (len < hashSize) {
+            throw new DigestException("Partial digests not returned, required length " + hashSize);
+        }
+        if (offset < 0 || buf.length - offset < hashSize) {
+            throw new DigestException("Insufficient space in the output buffer to store the digest");
+        }
+        hasher.finalizeHash(buf, offset, hashSize);
+        hasher.reset();
+        return hashSize;
     }
 
     @Override
     protected void engineReset() {
-        hasher = new Hasher();
+        hasher.reset();
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        final var copy = (Blake3Spi) super.clone();
+        copy.hasher = hasher.clone();
+        return copy;
     }
 }
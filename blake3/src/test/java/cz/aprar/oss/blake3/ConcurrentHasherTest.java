@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cz.aprar.oss.blake3;
+
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static cz.aprar.oss.blake3.VectorUtils.inputBytes;
+import static cz.aprar.oss.blake3.VectorUtils.testVector;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConcurrentHasherTest {
+    @TestFactory
+    Stream<DynamicTest> testFactory() throws IOException {
+        var vector = testVector();
+        return vector.cases().stream().flatMap((tc) -> Stream.of(
+                DynamicTest.dynamicTest("concurrent-regular-" + tc.inputLen(), () -> {
+                    testConcurrent(tc.hash(), new Hasher(), inputBytes(tc.inputLen()));
+                }),
+                DynamicTest.dynamicTest("concurrent-keyed-" + tc.inputLen(), () -> {
+                    testConcurrent(tc.keyedHash(), new Hasher(vector.key().getBytes()), inputBytes(tc.inputLen()));
+                }),
+                DynamicTest.dynamicTest("concurrent-derived-" + tc.inputLen(), () -> {
+                    testConcurrent(tc.deriveKey(), new Hasher(vector.contextString()), inputBytes(tc.inputLen()));
+                })
+        ));
+    }
+
+    void testConcurrent(final String hash, final Hasher hasher, final byte[] inputBytes) throws DecoderException {
+        final var expected = Hex.decodeHex(hash);
+
+        // Segments of random whole chunk lengths, added in random order from many threads.
+        final var random = new Random(inputBytes.length);
+        final var segments = new ArrayList<int[]>();
+        var offset = 0;
+        do {
+            final var len = Math.min((1 + random.nextInt(7)) * 1024, inputBytes.length - offset);
+            segments.add(new int[] {offset, len});
+            offset += len;
+        } while (offset < inputBytes.length);
+        Collections.shuffle(segments, random);
+
+        final var concurrent = new ConcurrentHasher(hasher);
+        segments.parallelStream().forEach(s -> concurrent.update(s[0], inputBytes, s[0], s[1]));
+        assertArrayEquals(expected, concurrent.finalizeHash(inputBytes.length, expected.length));
+    }
+
+    @Test
+    void testInvalidSegments() {
+        final var concurrent = new ConcurrentHasher(new Hasher());
+        assertThrows(IllegalArgumentException.class, () -> concurrent.update(100, new byte[1024]));
+        concurrent.update(1024, new byte[100]);
+        assertThrows(IllegalArgumentException.class, () -> concurrent.update(4096, new byte[100]));
+        assertThrows(IllegalStateException.class, () -> concurrent.finalizeHash(1124));
+        concurrent.update(0, new byte[1024]);
+
+        final var hasher = new Hasher();
+        hasher.update(new byte[1124]);
+        assertArrayEquals(hasher.finalizeHash(), concurrent.finalizeHash(1124));
+    }
+}
@@ -25,13 +25,18 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestFactory;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.UUID;
 import java.util.stream.Stream;
 
 import static cz.aprar.oss.blake3.Blake3.OUT_LEN;
 import static cz.aprar.oss.blake3.VectorUtils.inputBytes;
 import static cz.aprar.oss.blake3.VectorUtils.testVector;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 class HasherTest {
     @Test
@@ -44,6 +49,69 @@ class HasherTest {
         assertArrayEquals(hash, Arrays.copyOfRange(extendedHash, 0, OUT_LEN));
     }
 
+    @Test
+    void testSplitUpdates() {
+        final var input = inputBytes(10 * 1024 + 17);
+        final var expected = new Hasher();
+        for (final byte b : input) {
+            expected.update(b);
+        }
+
+        final var oneShot = new Hasher();
+        oneShot.update(input);
+        assertArrayEquals(expected.finalizeHash(), oneShot.finalizeHash());
+
+        final var split = new Hasher();
+        split.update(input, 0, 100);
+        split.update(input, 100, 2000);
+        split.update(input, 2100, 5 * 1024 - 2100);
+        split.update(input, 5 * 1024, input.length - 5 * 1024);
+        assertArrayEquals(expected.finalizeHash(), split.finalizeHash());
+
+        // Direct buffers longer than 4 chunks take the interleaved path in either byte order.
+        for (var order : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            final var direct = ByteBuffer.allocateDirect(input.length + 3).order(order);
+            direct.put(new byte[3]).put(input).position(3);
+            final var buffered = new Hasher();
+            buffered.update(direct.slice().limit(100));
+            buffered.update(direct.position(103).slice().limit(924));
+            buffered.update(direct.position(1027));
+            assertEquals(direct.limit(), direct.position());
+            assertArrayEquals(expected.finalizeHash(), buffered.finalizeHash());
+        }
+    }
+
+    @Test
+    void testTypedUpdates() {
+        final var text = "key \u00e9\u20ac\ud83d\ude00 \ud800 end";
+        final var utf8 = text.getBytes(StandardCharsets.UTF_8);
+        final var uuid = UUID.randomUUID();
+        final var fields = ByteBuffer.allocate(4 + 8 + 16 + 8 + utf8.length).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(0x01020304)
+                .putLong(-2L)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .putLong(utf8.length)
+                .put(utf8);
+
+        // Every offset within a block and across a chunk boundary.
+        for (int padding = 1000; padding < 1100; padding++) {
+            final var expected = new Hasher();
+            expected.update(inputBytes(padding));
+            expected.update(fields.array());
+            expected.update(utf8);
+
+            final var typed = new Hasher();
+            typed.update(inputBytes(padding));
+            typed.updateInt(0x01020304);
+            typed.updateLong(-2L);
+            typed.updateUuid(uuid);
+            typed.updateUtf8(text, true);
+            typed.updateUtf8(text);
+            assertArrayEquals(expected.finalizeHash(), typed.finalizeHash());
+        }
+    }
+
     @TestFactory
     Stream<DynamicTest> testFactory() throws IOException {
         var vector = testVector();
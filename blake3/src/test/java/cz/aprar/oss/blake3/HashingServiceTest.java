@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cz.aprar.oss.blake3;
+
+import org.apache.commons.codec.binary.Hex;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
+
+import static cz.aprar.oss.blake3.VectorUtils.inputBytes;
+import static cz.aprar.oss.blake3.VectorUtils.testVector;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashingServiceTest {
+    private static final ForkJoinPool POOL = ForkJoinPool.commonPool();
+
+    @TestFactory
+    Stream<DynamicTest> testFactory() throws IOException {
+        var vector = testVector();
+        final var service = new HashingService(POOL, 2, 16);
+        return vector.cases().stream().map((tc) ->
+                DynamicTest.dynamicTest("service-" + tc.inputLen(), () -> {
+                    final var input = inputBytes(tc.inputLen());
+                    final var hash = service.submit(new Hasher(), input);
+                    final var keyed = service.submit(new Hasher(vector.key().getBytes()), input);
+                    final var derived = service.submit(new Hasher(vector.contextString()), input);
+                    assertArrayEquals(Hex.decodeHex(tc.hash().substring(0, 64)), hash.join());
+                    assertArrayEquals(Hex.decodeHex(tc.keyedHash().substring(0, 64)), keyed.join());
+                    assertArrayEquals(Hex.decodeHex(tc.deriveKey().substring(0, 64)), derived.join());
+                })
+        );
+    }
+
+    @Test
+    void testMixedJobs() throws InterruptedException {
+        final var input = inputBytes(1 << 20);
+        final var sizes = new int[] {0, 1, 1024, 65536, 65537, 200000, 1 << 20};
+        try (var service = new HashingService(POOL, 1, 4)) {
+            final var results = new ArrayList<CompletableFuture<byte[]>>();
+            for (int round = 0; round < 10; round++) {
+                for (var size : sizes) {
+                    results.add(service.submit(new Hasher(), input, round, size - Math.min(size, round)));
+                }
+            }
+
+            var i = 0;
+            var bytes = 0L;
+            for (int round = 0; round < 10; round++) {
+                for (var size : sizes) {
+                    final var len = size - Math.min(size, round);
+                    final var hasher = new Hasher();
+                    hasher.update(input, round, len);
+                    assertArrayEquals(hasher.finalizeHash(), results.get(i++).join());
+                    bytes += len;
+                }
+            }
+
+            final var stats = service.stats();
+            assertEquals(results.size(), stats.completedJobs());
+            assertEquals(bytes, stats.hashedBytes());
+            assertEquals(0, stats.pendingSmallJobs());
+            assertEquals(0, stats.pendingLargeJobs());
+            assertTrue(stats.bytesPerSecond() > 0);
+        }
+    }
+
+    @Test
+    void testStatsAfterJoin() throws InterruptedException {
+        final var small = inputBytes(1000);
+        final var large = inputBytes(200000);
+        try (var service = new HashingService(POOL, 2, 16)) {
+            for (int i = 1; i <= 500; i++) {
+                final var smallResult = service.submit(new Hasher(), small);
+                final var largeResult = service.submit(new Hasher(), large);
+                smallResult.join();
+                largeResult.join();
+
+                final var stats = service.stats();
+                assertEquals(0, stats.pendingSmallJobs());
+                assertEquals(0, stats.pendingLargeJobs());
+                assertEquals(2L * i, stats.completedJobs());
+            }
+        }
+    }
+
+    @Test
+    void testClose() throws InterruptedException {
+        final var service = new HashingService();
+        final var large = service.submit(new Hasher(), inputBytes(1 << 20));
+        service.close();
+        assertTrue(large.isDone());
+        assertThrows(RejectedExecutionException.class, () -> service.submit(new Hasher(), new byte[1]));
+    }
+
+    @Test
+    void testInvalidArguments() {
+        final var used = new Hasher();
+        used.update(new byte[] {1});
+        final var service = new HashingService(POOL, 1, 1);
+        assertThrows(IllegalArgumentException.class, () -> service.submit(used, new byte[1]));
+        assertThrows(IndexOutOfBoundsException.class, () -> service.submit(new Hasher(), new byte[1], 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new HashingService(POOL, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new HashingService(POOL, 1, 0));
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cz.aprar.oss.blake3;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static cz.aprar.oss.blake3.VectorUtils.inputBytes;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class KeyedHash64Test {
+    private static final byte[] KEY = "whats the Elvish word for friend".getBytes();
+
+    private static long expected(final byte[] input, final int offset, final int len) {
+        final var hasher = new Hasher(KEY);
+        hasher.update(input, offset, len);
+        return ByteBuffer.wrap(hasher.finalizeHash(8)).order(ByteOrder.LITTLE_ENDIAN).getLong();
+    }
+
+    @Test
+    void testMatchesKeyedHasher() {
+        final var hash = new KeyedHash64(KEY);
+        final var input = inputBytes(3100);
+        for (final var len : new int[] {0, 1, 3, 4, 5, 8, 15, 16, 31, 63, 64, 65, 128, 1024, 1025, 3000}) {
+            assertEquals(expected(input, 0, len), hash.hash(input, 0, len), "length " + len);
+            assertEquals(expected(input, 7, len), hash.hash(input, 7, len), "offset length " + len);
+        }
+        assertEquals(expected(input, 0, 40), hash.hash(Arrays.copyOf(input, 40)));
+    }
+
+    @Test
+    void testEveryLengthOfOneChunk() {
+        final var hash = new KeyedHash64(KEY);
+        final var input = inputBytes(1100);
+        for (int len = 0; len <= 1090; len++) {
+            assertEquals(expected(input, 3, len), hash.hash(input, 3, len), "length " + len);
+        }
+    }
+
+    @Test
+    void testPrimitives() {
+        final var hash = new KeyedHash64(KEY);
+
+        final var intBytes = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0xCAFEBABE).array();
+        assertEquals(expected(intBytes, 0, 4), hash.hash(0xCAFEBABE));
+
+        final var longBytes = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(-42L).array();
+        assertEquals(expected(longBytes, 0, 8), hash.hash(-42L));
+
+        final var pairBytes = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN)
+                .putLong(0x0123456789ABCDEFL).putLong(Long.MIN_VALUE).array();
+        assertEquals(expected(pairBytes, 0, 16), hash.hash(0x0123456789ABCDEFL, Long.MIN_VALUE));
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new KeyedHash64(new byte[16]));
+        final var hash = new KeyedHash64(KEY);
+        assertThrows(IndexOutOfBoundsException.class, () -> hash.hash(new byte[10], 5, 6));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cz.aprar.oss.blake3;
+
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+import java.io.IOException;
+import java.util.stream.Stream;
+
+import static cz.aprar.oss.blake3.VectorUtils.inputBytes;
+import static cz.aprar.oss.blake3.VectorUtils.testVector;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MultiHasherTest {
+    @TestFactory
+    Stream<DynamicTest> testFactory() throws IOException {
+        var vector = testVector();
+        return vector.cases().stream().map((tc) ->
+                DynamicTest.dynamicTest("multi-" + tc.inputLen(), () -> testMulti(
+                        tc,
+                        inputBytes(tc.inputLen()),
+                        vector.key().getBytes(),
+                        vector.contextString()
+                ))
+        );
+    }
+
+    void testMulti(final Case testCase, final byte[] inputBytes, final byte[] key, final String context) throws DecoderException {
+        final var expectedHash = Hex.decodeHex(testCase.hash());
+        final var expectedKeyedHash = Hex.decodeHex(testCase.keyedHash());
+        final var expectedDeriveKey = Hex.decodeHex(testCase.deriveKey());
+
+        final var hasher = new MultiHasher(new Hasher(), new Hasher(key), new Hasher(context));
+        hasher.update(inputBytes);
+        assertArrayEquals(expectedHash, hasher.finalizeHash(0, expectedHash.length));
+        assertArrayEquals(expectedKeyedHash, hasher.finalizeHash(1, expectedKeyedHash.length));
+        assertArrayEquals(expectedDeriveKey, hasher.finalizeHash(2, expectedDeriveKey.length));
+    }
+
+    @Test
+    void testManyModes() {
+        final var input = inputBytes(9000);
+        final var modes = new Hasher[] {
+                new Hasher(),
+                new Hasher(new byte[32]),
+                new Hasher("context 1"),
+                new Hasher("context 2"),
+                new Hasher("context 3"),
+                new Hasher(inputBytes(32)),
+        };
+        final var expected = new byte[modes.length][];
+        for (int i = 0; i < modes.length; i++) {
+            final var hasher = modes[i].clone();
+            hasher.update(input);
+            expected[i] = hasher.finalizeHash();
+        }
+
+        final var multi = new MultiHasher(modes);
+        multi.update(input, 0, 1000);
+        multi.update(input, 1000, 3000);
+        multi.update(input, 4000, input.length - 4000);
+        for (int i = 0; i < modes.length; i++) {
+            assertArrayEquals(expected[i], multi.finalizeHash(i));
+        }
+
+        // Whole chunks follow a full current chunk.
+        final var aligned = new MultiHasher(modes);
+        aligned.update(input, 0, 1024);
+        aligned.update(input, 1024, input.length - 1024);
+        for (int i = 0; i < modes.length; i++) {
+            assertArrayEquals(expected[i], aligned.finalizeHash(i));
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> multi.finalizeHash(modes.length));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cz.aprar.oss.blake3;
+
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static cz.aprar.oss.blake3.VectorUtils.inputBytes;
+import static cz.aprar.oss.blake3.VectorUtils.testVector;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PipelinedHasherTest {
+    private static final Executor EXECUTOR = ForkJoinPool.commonPool();
+
+    @TestFactory
+    Stream<DynamicTest> testFactory() throws IOException {
+        var vector = testVector();
+        return vector.cases().stream().flatMap((tc) -> Stream.of(
+                DynamicTest.dynamicTest("pipelined-regular-" + tc.inputLen(), () -> {
+                    testPipelined(tc.hash(), new Hasher(), inputBytes(tc.inputLen()));
+                }),
+                DynamicTest.dynamicTest("pipelined-keyed-" + tc.inputLen(), () -> {
+                    testPipelined(tc.keyedHash(), new Hasher(vector.key().getBytes()), inputBytes(tc.inputLen()));
+                }),
+                DynamicTest.dynamicTest("pipelined-derived-" + tc.inputLen(), () -> {
+                    testPipelined(tc.deriveKey(), new Hasher(vector.contextString()), inputBytes(tc.inputLen()));
+                })
+        ));
+    }
+
+    void testPipelined(final String hash, final Hasher hasher, final byte[] inputBytes) throws DecoderException, IOException {
+        final var expected = Hex.decodeHex(hash);
+
+        final var pipelined = new PipelinedHasher(hasher.clone(), EXECUTOR, 2, 2);
+        pipelined.update(inputBytes);
+        assertArrayEquals(expected, pipelined.finalizeHash(expected.length));
+
+        final var buffered = new PipelinedHasher(hasher.clone(), EXECUTOR, 4, 1);
+        buffered.update(ByteBuffer.wrap(inputBytes));
+        assertArrayEquals(expected, buffered.finalizeHash(expected.length));
+
+        final var streamed = new PipelinedHasher(hasher, EXECUTOR, 1, 3);
+        streamed.update(new ShortReadInputStream(new ByteArrayInputStream(inputBytes)));
+        assertArrayEquals(expected, streamed.finalizeHash(expected.length));
+    }
+
+    @Test
+    void testUpdateAfterFinalize() {
+        final var input = inputBytes(102400);
+        final var hasher = new Hasher();
+        final var pipelined = new PipelinedHasher(new Hasher(), EXECUTOR, 4, 2);
+        for (int offset = 0; offset < input.length; offset += 7000) {
+            final var len = Math.min(7000, input.length - offset);
+            hasher.update(input, offset, len);
+            pipelined.update(input, offset, len);
+            assertArrayEquals(hasher.finalizeHash(), pipelined.finalizeHash());
+        }
+    }
+
+    @Test
+    void testInvalidArguments() {
+        final var used = new Hasher();
+        used.update(new byte[] {1});
+        assertThrows(IllegalArgumentException.class, () -> new PipelinedHasher(used, EXECUTOR));
+        assertThrows(IllegalArgumentException.class, () -> new PipelinedHasher(new Hasher(), EXECUTOR, 3, 2));
+        assertThrows(IllegalArgumentException.class, () -> new PipelinedHasher(new Hasher(), EXECUTOR, 4, 0));
+    }
+
+    private static class ShortReadInputStream extends FilterInputStream {
+        ShortReadInputStream(final InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            return super.read(b, off, Math.min(len, 300));
+        }
+    }
+}
@@ -23,17 +23,32 @@ import org.apache.commons.codec.DecoderException;
 import org.apache.commons.codec.binary.Hex;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.security.Security;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static cz.aprar.oss.blake3.VectorUtils.inputBytes;
 import static cz.aprar.oss.blake3.VectorUtils.testVector;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class ProviderTest {
     @BeforeAll
@@ -56,4 +71,109 @@ public class ProviderTest {
         digest.update(inputBytes);
         assertArrayEquals(expected, digest.digest());
     }
+
+    @Test
+    void testDirectByteBuffer() throws NoSuchAlgorithmException {
+        final var input = inputBytes(5121);
+        final var buffer = ByteBuffer.allocateDirect(input.length);
+        buffer.put(input).flip();
+
+        final var digest = MessageDigest.getInstance("Blake3");
+        digest.update(buffer);
+        assertEquals(input.length, buffer.position());
+        assertArrayEquals(MessageDigest.getInstance("Blake3").digest(input), digest.digest());
+    }
+
+    @Test
+    void testDigestIntoBuffer() throws NoSuchAlgorithmException, DigestException {
+        final var input = inputBytes(3073);
+        final var digest = MessageDigest.getInstance("Blake3");
+        final var expected = digest.digest(input);
+
+        final var out = new byte[expected.length + 3];
+        digest.update(input);
+        assertEquals(expected.length, digest.digest(out, 3, expected.length));
+        assertArrayEquals(expected, Arrays.copyOfRange(out, 3, out.length));
+        assertThrows(DigestException.class, () -> digest.digest(out, 0, expected.length - 1));
+    }
+
+    @Test
+    void testResetAndClone() throws NoSuchAlgorithmException, CloneNotSupportedException {
+        final var input = inputBytes(2049);
+        final var digest = MessageDigest.getInstance("Blake3");
+        final var expected = digest.digest(input);
+
+        digest.update(input, 0, 1025);
+        final var copy = (MessageDigest) digest.clone();
+        digest.update(input, 1025, input.length - 1025);
+        copy.update(input, 1025, input.length - 1025);
+        assertArrayEquals(expected, digest.digest());
+        assertArrayEquals(expected, copy.digest());
+
+        digest.update(input);
+        digest.reset();
+        for (final byte b : input) {
+            digest.update(b);
+        }
+        assertArrayEquals(expected, digest.digest());
+    }
+
+    @Test
+    void testSizedDigests() throws NoSuchAlgorithmException {
+        final var input = inputBytes(1025);
+        final var hasher = new Hasher();
+        hasher.update(input);
+
+        assertArrayEquals(MessageDigest.getInstance("Blake3").digest(input), MessageDigest.getInstance("Blake3-256").digest(input));
+        for (final var size : new int[] {28, 48, 64, 128}) {
+            final var digest = MessageDigest.getInstance("Blake3-" + size * 8);
+            assertEquals(size, digest.getDigestLength());
+            assertArrayEquals(hasher.finalizeHash(size), digest.digest(input));
+        }
+    }
+
+    @Test
+    void testSecureRandom() throws NoSuchAlgorithmException {
+        final var random = SecureRandom.getInstance("Blake3");
+        assertEquals("Blake3", random.getAlgorithm());
+
+        final var first = new byte[3000];
+        final var second = new byte[3000];
+        random.nextBytes(first);
+        random.setSeed(42L);
+        random.nextBytes(second);
+        assertFalse(Arrays.equals(first, second));
+        assertFalse(Arrays.equals(new byte[first.length], first));
+        assertEquals(16, random.generateSeed(16).length);
+
+        // Every thread has its own generator, none of them may repeat the output of another.
+        final var outputs = ConcurrentHashMap.<String>newKeySet();
+        ForkJoinPool.commonPool().submit(() -> IntStream.range(0, 1000).parallel().forEach(i -> {
+            final var bytes = new byte[16];
+            random.nextBytes(bytes);
+            outputs.add(Arrays.toString(bytes));
+        })).join();
+        assertEquals(1000, outputs.size());
+    }
+
+    @Test
+    void testSerializeSecureRandom() throws NoSuchAlgorithmException, IOException, ClassNotFoundException {
+        final var random = SecureRandom.getInstance("Blake3");
+        final var bytes = new ByteArrayOutputStream();
+        try (var out = new ObjectOutputStream(bytes)) {
+            out.writeObject(random);
+        }
+        final SecureRandom copy;
+        try (var in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (SecureRandom) in.readObject();
+        }
+
+        // The copy is seeded again, it does not repeat the output of the original.
+        final var first = new byte[64];
+        final var second = new byte[64];
+        random.nextBytes(first);
+        copy.nextBytes(second);
+        assertFalse(Arrays.equals(first, second));
+        assertFalse(Arrays.equals(new byte[second.length], second));
+    }
 }
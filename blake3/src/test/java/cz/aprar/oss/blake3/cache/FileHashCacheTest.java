@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cz.aprar.oss.blake3.cache;
+
+import cz.aprar.oss.blake3.Hasher;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FileHashCacheTest {
+    private static final FileTime OLD_TIME = FileTime.from(Instant.parse("2020-01-01T00:00:00Z"));
+
+    @TempDir
+    Path dir;
+
+    private Path writeFile(final String name, final byte[] content) throws IOException {
+        final var file = dir.resolve(name);
+        Files.write(file, content);
+        Files.setLastModifiedTime(file, OLD_TIME);
+        return file;
+    }
+
+    private static byte[] expectedHash(final byte[] content) {
+        final var hasher = new Hasher();
+        hasher.update(content);
+        return hasher.finalizeHash();
+    }
+
+    private static byte[] content(final int len, final int seed) {
+        final var content = new byte[len];
+        for (int i = 0; i < len; i++) {
+            content[i] = (byte) (i * 31 + seed);
+        }
+        return content;
+    }
+
+    @Test
+    void testCachedUntilMetadataChanges() throws IOException {
+        final var original = content(200_000, 1);
+        final var file = writeFile("data.bin", original);
+        final var cache = new FileHashCache(10);
+
+        assertArrayEquals(expectedHash(original), cache.hash(file));
+        assertEquals(1, cache.size());
+
+        // Same size and modification time, so the cached hash is returned.
+        writeFile("data.bin", content(200_000, 2));
+        assertArrayEquals(expectedHash(original), cache.hash(file));
+
+        // Changed size is detected.
+        final var changed = content(1000, 3);
+        writeFile("data.bin", changed);
+        assertArrayEquals(expectedHash(changed), cache.hash(file));
+    }
+
+    @Test
+    void testRecentlyModifiedFileIsNotCached() throws IOException {
+        final var file = dir.resolve("fresh.bin");
+        Files.write(file, content(100, 1));
+        final var cache = new FileHashCache(10);
+
+        assertArrayEquals(expectedHash(content(100, 1)), cache.hash(file));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testEviction() throws IOException {
+        final var cache = new FileHashCache(2);
+        final var first = writeFile("a", content(10, 1));
+        final var second = writeFile("b", content(10, 2));
+        final var third = writeFile("c", content(10, 3));
+
+        cache.hash(first);
+        cache.hash(second);
+        cache.hash(first);
+        cache.hash(third);
+        assertEquals(2, cache.size());
+
+        // The recently used entry stays cached, the least recently used one was evicted.
+        writeFile("a", content(10, 5));
+        assertArrayEquals(expectedHash(content(10, 1)), cache.hash(first));
+        writeFile("b", content(10, 4));
+        assertArrayEquals(expectedHash(content(10, 4)), cache.hash(second));
+    }
+
+    @Test
+    void testSaveAndLoad() throws IOException {
+        final var file = writeFile("data.bin", content(5000, 1));
+        final var cacheFile = dir.resolve("hashes.cache");
+        final var cache = new FileHashCache(10);
+        cache.hash(file);
+        cache.save(cacheFile);
+
+        final var loaded = FileHashCache.load(cacheFile, 10);
+        assertEquals(1, loaded.size());
+        writeFile("data.bin", content(5000, 2));
+        assertArrayEquals(expectedHash(content(5000, 1)), loaded.hash(file));
+
+        loaded.invalidate(file);
+        assertArrayEquals(expectedHash(content(5000, 2)), loaded.hash(file));
+        assertEquals(0, FileHashCache.load(dir.resolve("missing.cache"), 10).size());
+    }
+}
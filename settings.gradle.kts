@@ -1,3 +1,4 @@
 rootProject.name = "blake3"
 
 include("blake3")
+include("blake3-dedup")